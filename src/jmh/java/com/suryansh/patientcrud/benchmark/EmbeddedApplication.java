@@ -0,0 +1,111 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+package com.suryansh.patientcrud.benchmark;
+
+import com.suryansh.patientcrud.PatientCrudApplication;
+import com.suryansh.patientcrud.entity.PatientRecord;
+import com.suryansh.patientcrud.service.PatientRecordBatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Boots the application against a private in-memory H2 database (MySQL mode): without a web server for benchmarks
+ * that drive the beans directly, or on a random port for load tests.
+ */
+public final class EmbeddedApplication {
+
+    static {
+        // devtools, when on the classpath (run from an IDE), would otherwise relaunch the caller's main() in a restart class loader.
+        System.setProperty("spring.devtools.restart.enabled", "false");
+    }
+
+    private EmbeddedApplication() {
+    }
+
+    /**
+     * {@code properties} are {@code key=value} pairs; they are passed as command-line arguments so they win over
+     * {@code application.properties}.
+     */
+    public static ConfigurableApplicationContext start(String databaseName, String... properties) {
+        return start(WebApplicationType.NONE, databaseName, properties);
+    }
+
+    /**
+     * Same as {@link #start(String, String...)} but with the embedded Tomcat on a random port, see {@link #port}.
+     */
+    public static ConfigurableApplicationContext startWeb(String databaseName, String... properties) {
+        List<String> withPort = new ArrayList<>(Arrays.asList(properties));
+        withPort.add(0, "server.port=0");
+        return start(WebApplicationType.SERVLET, databaseName, withPort.toArray(new String[0]));
+    }
+
+    public static int port(ConfigurableApplicationContext context) {
+        return context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+    }
+
+    private static ConfigurableApplicationContext start(WebApplicationType webApplicationType, String databaseName,
+                                                        String... properties) {
+        List<String> args = new ArrayList<>();
+        args.add("--spring.datasource.url=jdbc:h2:mem:" + databaseName + ";MODE=MySQL;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE");
+        args.add("--spring.jpa.hibernate.ddl-auto=create");
+        args.add("--logging.level.root=WARN");
+        for (String property : properties) {
+            args.add("--" + property);
+        }
+        return new SpringApplicationBuilder(PatientCrudApplication.class)
+            .web(webApplicationType)
+            .bannerMode(Banner.Mode.OFF)
+            .logStartupInfo(false)
+            .run(args.toArray(new String[0]));
+    }
+
+    /**
+     * Inserts {@code rows} patients through the batch service and returns their IDs; on an empty, unsharded database
+     * they are 1..rows.
+     */
+    public static List<Long> seed(ConfigurableApplicationContext context, int rows) {
+        PatientRecordBatchService batchService = context.getBean(PatientRecordBatchService.class);
+        List<Long> ids = new ArrayList<>(rows);
+        int perCall = 5000;
+        for (int from = 0; from < rows; from += perCall) {
+            List<PatientRecord> records = new ArrayList<>(perCall);
+            for (int i = from; i < Math.min(from + perCall, rows); i++) {
+                records.add(patient(i));
+            }
+            batchService.createAll(records).forEach(record -> ids.add(record.getPatientId()));
+        }
+        return ids;
+    }
+
+    public static PatientRecord patient(int i) {
+        return PatientRecord.builder()
+            .name("Patient " + i)
+            .age(i % 100)
+            .address(i + " Station Road, City " + (i % 50))
+            .build();
+    }
+}
@@ -0,0 +1,198 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+package com.suryansh.patientcrud.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Per-endpoint results of a {@link PatientLoadTest} run: latency (from when each request was due) and service time
+ * (from when it was sent) as HdrHistograms in microseconds, plus error and drop counts. Printed as a table and written
+ * as JSON, which a later run can take as its {@code baseline}.
+ */
+final class LoadReport {
+
+    static final String ALL = "all";
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+    private final String label;
+    private final Map<String, String> configuration;
+    private final Duration duration;
+    private final Map<String, Endpoint> endpoints = new LinkedHashMap<>();
+
+    LoadReport(String label, Map<String, String> configuration, Duration duration, Collection<String> endpointNames) {
+        this.label = label;
+        this.configuration = configuration;
+        this.duration = duration;
+        endpointNames.forEach(name -> endpoints.put(name, new Endpoint()));
+    }
+
+    void record(String endpoint, long latencyNanos, long serviceTimeNanos, boolean succeeded) {
+        Endpoint results = endpoints.get(endpoint);
+        results.latencies.recordValue(latencyNanos / 1000);
+        results.serviceTimes.recordValue(serviceTimeNanos / 1000);
+        if (!succeeded) {
+            results.errors.incrementAndGet();
+        }
+    }
+
+    /**
+     * The request was due but never sent because too many were already in flight; it counts as an error.
+     */
+    void dropped(String endpoint) {
+        endpoints.get(endpoint).dropped.incrementAndGet();
+    }
+
+    void print(PrintStream out) {
+        out.printf("%nLoad test '%s': %s%n", label, configuration);
+        out.printf("%-22s %9s %8s %8s %7s %9s", "endpoint", "requests", "errors", "dropped", "err %", "req/s");
+        for (double percentile : PERCENTILES) {
+            out.printf(" %9s", "p" + format(percentile) + " ms");
+        }
+        out.printf(" %9s %11s%n", "max ms", "svc p99 ms");
+        withTotal().forEach((name, results) -> {
+            out.printf("%-22s %9d %8d %8d %7.2f %9.1f", name, results.requests(), results.errors.get(),
+                results.dropped.get(), results.errorRate() * 100, results.throughput(duration));
+            for (double percentile : PERCENTILES) {
+                out.printf(" %9.2f", results.latencies.getValueAtPercentile(percentile) / 1000.0);
+            }
+            out.printf(" %9.2f %11.2f%n", results.latencies.getMaxValue() / 1000.0,
+                results.serviceTimes.getValueAtPercentile(99) / 1000.0);
+        });
+    }
+
+    void write(Path file, ObjectMapper mapper) throws IOException {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("label", label);
+        json.put("timestamp", Instant.now().toString());
+        json.put("durationSeconds", duration.getSeconds());
+        json.put("configuration", configuration);
+        Map<String, Object> endpointsJson = new LinkedHashMap<>();
+        withTotal().forEach((name, results) -> {
+            Map<String, Object> endpoint = new LinkedHashMap<>();
+            endpoint.put("requests", results.requests());
+            endpoint.put("errors", results.errors.get());
+            endpoint.put("dropped", results.dropped.get());
+            endpoint.put("errorRate", results.errorRate());
+            endpoint.put("throughput", results.throughput(duration));
+            endpoint.put("latencyMs", percentiles(results.latencies));
+            endpoint.put("serviceTimeMs", percentiles(results.serviceTimes));
+            endpointsJson.put(name, endpoint);
+        });
+        json.put("endpoints", endpointsJson);
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        mapper.writerWithDefaultPrettyPrinter().writeValue(file.toFile(), json);
+    }
+
+    /**
+     * Throughput and p99 latency of this run next to those of an earlier report, per endpoint both have.
+     */
+    void compare(JsonNode baseline, PrintStream out) {
+        out.printf("%nAgainst '%s' (%s):%n", baseline.path("label").asText(), baseline.path("timestamp").asText());
+        out.printf("%-22s %10s %10s %8s %10s %10s %8s%n", "endpoint", "req/s", "was", "change", "p99 ms", "was", "change");
+        withTotal().forEach((name, results) -> {
+            JsonNode before = baseline.path("endpoints").path(name);
+            if (before.isMissingNode()) {
+                return;
+            }
+            double throughput = results.throughput(duration);
+            double p99 = results.latencies.getValueAtPercentile(99) / 1000.0;
+            double throughputBefore = before.path("throughput").asDouble();
+            double p99Before = before.path("latencyMs").path("p99").asDouble();
+            out.printf("%-22s %10.1f %10.1f %7.1f%% %10.2f %10.2f %7.1f%%%n", name, throughput, throughputBefore,
+                change(throughput, throughputBefore), p99, p99Before, change(p99, p99Before));
+        });
+    }
+
+    private Map<String, Endpoint> withTotal() {
+        Endpoint total = new Endpoint();
+        endpoints.values().forEach(total::add);
+        Map<String, Endpoint> all = new LinkedHashMap<>();
+        endpoints.forEach((name, results) -> {
+            if (results.requests() > 0) {
+                all.put(name, results);
+            }
+        });
+        all.put(ALL, total);
+        return all;
+    }
+
+    private static Map<String, Double> percentiles(Histogram histogram) {
+        Map<String, Double> millis = new LinkedHashMap<>();
+        for (double percentile : PERCENTILES) {
+            millis.put("p" + format(percentile), histogram.getValueAtPercentile(percentile) / 1000.0);
+        }
+        millis.put("max", histogram.getMaxValue() / 1000.0);
+        millis.put("mean", histogram.getMean() / 1000.0);
+        return millis;
+    }
+
+    private static String format(double percentile) {
+        return percentile == Math.rint(percentile) ? Long.toString((long) percentile) : Double.toString(percentile);
+    }
+
+    private static double change(double now, double before) {
+        return before == 0 ? 0 : (now - before) / before * 100;
+    }
+
+    private static final class Endpoint {
+        // Auto-resizing, so a response slower than any bound picked up front is still recorded.
+        final Histogram latencies = new ConcurrentHistogram(3);
+        final Histogram serviceTimes = new ConcurrentHistogram(3);
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong dropped = new AtomicLong();
+
+        void add(Endpoint other) {
+            latencies.add(other.latencies);
+            serviceTimes.add(other.serviceTimes);
+            errors.addAndGet(other.errors.get());
+            dropped.addAndGet(other.dropped.get());
+        }
+
+        long requests() {
+            return latencies.getTotalCount() + dropped.get();
+        }
+
+        double errorRate() {
+            long requests = requests();
+            return requests == 0 ? 0 : (errors.get() + dropped.get()) / (double) requests;
+        }
+
+        double throughput(Duration duration) {
+            return latencies.getTotalCount() / (double) duration.getSeconds();
+        }
+    }
+}
@@ -0,0 +1,312 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+package com.suryansh.patientcrud.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.suryansh.patientcrud.entity.PatientRecord;
+import com.suryansh.patientcrud.pagination.KeysetCursor;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * End-to-end load test: boots the application on an embedded database, seeds it and drives a mix of reads and writes
+ * at a fixed arrival rate, then prints per-endpoint latency percentiles, error rates and throughput and writes them
+ * as JSON.
+ * <p>
+ * The load is an open model: request {@code i} is due at {@code start + i / rate} whether or not earlier requests
+ * have completed, and its latency is measured from that due time. A stall therefore shows up in the latency of every
+ * request it held up, not just the one that was slow, which is what a closed loop like {@link ThreadModelLoadTest}
+ * hides (coordinated omission). The service time, measured from when the request was actually sent, is reported
+ * next to it.
+ * <pre>
+ * mvn -Pbenchmark compile exec:exec@load -Dloadtest.args="rate=2000 seconds=60 label=virtual patient.threads.mode=virtual"
+ * mvn -Pbenchmark compile exec:exec@load -Dloadtest.args="rate=2000 label=pool20 baseline=target/loadtest/virtual.json
+ *     spring.datasource.hikari.maximum-pool-size=20"
+ * </pre>
+ * Arguments ({@code key=value}): {@code rate} in requests/s (500), {@code seconds} (30), {@code warmupSeconds} (10),
+ * {@code tableSize} (10000), {@code mix} as weights ({@code get=60,list=10,create=10,update=15,delete=5}),
+ * {@code maxInFlight} (5000; requests due beyond that are dropped and counted as errors), {@code label} (default),
+ * {@code report} ({@code target/loadtest/<label>.json}) and {@code baseline}, a report of an earlier run to compare
+ * with. Any other {@code key=value} is passed to the application, e.g. {@code patient.cache.enabled=false}.
+ */
+public final class PatientLoadTest {
+
+    private enum Operation {
+        GET("GET /patient/{id}"),
+        LIST("GET /patient"),
+        CREATE("POST /patient"),
+        UPDATE("PUT /patient"),
+        DELETE("DELETE /patient/{id}");
+
+        final String endpoint;
+
+        Operation(String endpoint) {
+            this.endpoint = endpoint;
+        }
+    }
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final String baseUrl;
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+    private final IdPool ids;
+    private final int maxInFlight;
+    private final ObjectMapper mapper;
+    private final HttpClient client = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(Duration.ofSeconds(5))
+        .build();
+    private final AtomicInteger created = new AtomicInteger();
+
+    private PatientLoadTest(String baseUrl, Map<Operation, Integer> mix, IdPool ids, int maxInFlight, ObjectMapper mapper) {
+        this.baseUrl = baseUrl;
+        this.operations = mix.keySet().toArray(new Operation[0]);
+        this.cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += mix.get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+        this.ids = ids;
+        this.maxInFlight = maxInFlight;
+        this.mapper = mapper;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        options.put("rate", "500");
+        options.put("seconds", "30");
+        options.put("warmupSeconds", "10");
+        options.put("tableSize", "10000");
+        options.put("mix", "get=60,list=10,create=10,update=15,delete=5");
+        options.put("maxInFlight", "5000");
+        options.put("label", "default");
+        options.put("report", null);
+        options.put("baseline", null);
+        List<String> applicationProperties = new ArrayList<>();
+        for (String arg : args) {
+            String key = arg.substring(0, arg.indexOf('='));
+            if (options.containsKey(key)) {
+                options.put(key, arg.substring(key.length() + 1));
+            } else {
+                applicationProperties.add(arg);
+            }
+        }
+        int rate = Integer.parseInt(options.get("rate"));
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.get("seconds")));
+        Map<Operation, Integer> mix = parseMix(options.get("mix"));
+        Path reportFile = Paths.get(options.get("report") != null
+            ? options.get("report") : "target/loadtest/" + options.get("label") + ".json");
+
+        Map<String, String> configuration = new LinkedHashMap<>();
+        options.forEach((key, value) -> {
+            if (value != null && !key.equals("report") && !key.equals("baseline") && !key.equals("label")) {
+                configuration.put(key, value);
+            }
+        });
+        applicationProperties.forEach(property ->
+            configuration.put(property.substring(0, property.indexOf('=')), property.substring(property.indexOf('=') + 1)));
+
+        LoadReport report;
+        ObjectMapper mapper;
+        try (ConfigurableApplicationContext context =
+                 EmbeddedApplication.startWeb("load", applicationProperties.toArray(new String[0]))) {
+            mapper = context.getBean(ObjectMapper.class);
+            IdPool ids = new IdPool(EmbeddedApplication.seed(context, Integer.parseInt(options.get("tableSize"))));
+            PatientLoadTest loadTest = new PatientLoadTest("http://localhost:" + EmbeddedApplication.port(context) + "/patient",
+                mix, ids, Integer.parseInt(options.get("maxInFlight")), mapper);
+            loadTest.run(rate, Duration.ofSeconds(Long.parseLong(options.get("warmupSeconds"))), options.get("label"), configuration);
+            report = loadTest.run(rate, duration, options.get("label"), configuration);
+        }
+
+        report.print(System.out);
+        report.write(reportFile, mapper);
+        System.out.printf("%nReport written to %s%n", reportFile.toAbsolutePath());
+        if (options.get("baseline") != null) {
+            report.compare(mapper.readTree(Paths.get(options.get("baseline")).toFile()), System.out);
+        }
+    }
+
+    /**
+     * Dispatches requests on schedule from this thread, each sent from its own virtual thread, then waits for the
+     * ones still in flight.
+     */
+    private LoadReport run(int rate, Duration duration, String label, Map<String, String> configuration) {
+        LoadReport report = new LoadReport(label, configuration, duration,
+            Arrays.stream(Operation.values()).map(operation -> operation.endpoint).collect(Collectors.toList()));
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        try (ExecutorService requests = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; ; i++) {
+                long due = start + Math.round(i * 1e9 / rate);
+                if (due >= end) {
+                    break;
+                }
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                Operation operation = pick();
+                if (!inFlight.tryAcquire()) {
+                    report.dropped(operation.endpoint);
+                    continue;
+                }
+                requests.execute(() -> {
+                    try {
+                        send(operation, due, report);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+        return report;
+    }
+
+    private void send(Operation operation, long due, LoadReport report) {
+        Long id = operation == Operation.DELETE ? ids.take() : ids.random();
+        if (id == null) {
+            // Nothing left to read or delete.
+            operation = Operation.CREATE;
+        }
+        long sent = System.nanoTime();
+        boolean succeeded;
+        try {
+            HttpResponse<String> response = client.send(request(operation, id), HttpResponse.BodyHandlers.ofString());
+            succeeded = response.statusCode() / 100 == 2;
+            if (succeeded && operation == Operation.CREATE) {
+                ids.add(mapper.readTree(response.body()).get("patientId").asLong());
+            }
+        } catch (IOException e) {
+            succeeded = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        long completed = System.nanoTime();
+        report.record(operation.endpoint, completed - due, completed - sent, succeeded);
+    }
+
+    private HttpRequest request(Operation operation, Long id) throws IOException {
+        HttpRequest.Builder request = HttpRequest.newBuilder().timeout(REQUEST_TIMEOUT);
+        switch (operation) {
+            case GET:
+                return request.uri(URI.create(baseUrl + "/" + id)).GET().build();
+            case LIST:
+                return request.uri(URI.create(baseUrl + "?limit=20&cursor=" + KeysetCursor.encode(id))).GET().build();
+            case CREATE:
+                return json(request.uri(URI.create(baseUrl)), "POST",
+                    EmbeddedApplication.patient(created.incrementAndGet()));
+            case UPDATE:
+                PatientRecord update = EmbeddedApplication.patient(ThreadLocalRandom.current().nextInt(100_000));
+                update.setPatientId(id);
+                return json(request.uri(URI.create(baseUrl)), "PUT", update);
+            case DELETE:
+                return request.uri(URI.create(baseUrl + "/" + id)).DELETE().build();
+            default:
+                throw new IllegalArgumentException(operation.name());
+        }
+    }
+
+    private HttpRequest json(HttpRequest.Builder request, String method, PatientRecord body) throws IOException {
+        return request.header("Content-Type", "application/json")
+            .method(method, HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(body)))
+            .build();
+    }
+
+    private Operation pick() {
+        int roll = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (roll < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            String[] weight = entry.trim().split("=");
+            int value = Integer.parseInt(weight[1]);
+            if (value > 0) {
+                weights.put(Operation.valueOf(weight[0].trim().toUpperCase()), value);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("mix needs at least one positive weight: " + mix);
+        }
+        return weights;
+    }
+
+    /**
+     * IDs known to exist, for reads, updates and deletes to pick from. A delete takes its ID out first, so other
+     * requests stop picking it.
+     */
+    private static final class IdPool {
+        private final List<Long> ids;
+
+        IdPool(List<Long> seeded) {
+            this.ids = new ArrayList<>(seeded);
+        }
+
+        synchronized Long random() {
+            return ids.isEmpty() ? null : ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+        }
+
+        synchronized Long take() {
+            if (ids.isEmpty()) {
+                return null;
+            }
+            int index = ThreadLocalRandom.current().nextInt(ids.size());
+            Long id = ids.get(index);
+            ids.set(index, ids.get(ids.size() - 1));
+            ids.remove(ids.size() - 1);
+            return id;
+        }
+
+        synchronized void add(long id) {
+            ids.add(id);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+package com.suryansh.patientcrud.benchmark;
+
+import com.suryansh.patientcrud.controller.PatientRecordController;
+import com.suryansh.patientcrud.entity.PatientRecord;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Controller hot paths against a seeded embedded database. Throughput plus sample-time mode, which reports the
+ * p99/p99.9 latency percentiles; run with {@code -prof gc} (the profile's default) for allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PatientRecordControllerBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    int tableSize;
+
+    @Param({"true", "false"})
+    boolean cacheEnabled;
+
+    ConfigurableApplicationContext context;
+    PatientRecordController controller;
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        context = EmbeddedApplication.start("controller_" + tableSize + "_" + cacheEnabled,
+            "patient.cache.enabled=" + cacheEnabled);
+        EmbeddedApplication.seed(context, tableSize);
+        controller = context.getBean(PatientRecordController.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+    }
+
+    @Benchmark
+    public ResponseEntity<PatientRecord> getPatientById() {
+        return controller.getPatientById(randomId());
+    }
+
+    @Benchmark
+    public ResponseEntity<List<PatientRecord>> getAllRecords() {
+        return controller.getAllRecords(null, null);
+    }
+
+    /**
+     * The whole table as NDJSON, so this one scales with {@code tableSize}.
+     */
+    @Benchmark
+    public void streamAllRecords(Blackhole blackhole) throws IOException {
+        controller.streamAllRecords().getBody().writeTo(new BlackholeOutputStream(blackhole));
+    }
+
+    @Benchmark
+    public PatientRecord createRecord() {
+        return controller.createRecord(EmbeddedApplication.patient(ThreadLocalRandom.current().nextInt()));
+    }
+
+    @Benchmark
+    public ResponseEntity<PatientRecord> updatePatientRecord() {
+        int i = ThreadLocalRandom.current().nextInt();
+        PatientRecord patientRecord = EmbeddedApplication.patient(i);
+        patientRecord.setPatientId(randomId());
+        return controller.updatePatientRecord(patientRecord, null);
+    }
+
+    private long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, tableSize + 1);
+    }
+
+    private static final class BlackholeOutputStream extends OutputStream {
+        private final Blackhole blackhole;
+
+        BlackholeOutputStream(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void write(int b) {
+            blackhole.consume(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            blackhole.consume(b);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.benchmark;
+
+import com.suryansh.patientcrud.controller.PatientRecordController;
+import com.suryansh.patientcrud.entity.PatientRecord;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * {@code createRecord} from 32 concurrent callers, each committing one row per transaction or sharing group commits.
+ * Throughput is acknowledged creates per second; sample time shows the latency the flush deadline adds. The
+ * embedded H2 doesn't fsync on commit, so the gap on MySQL (where every commit flushes the redo log) is larger.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(32)
+@Fork(1)
+public class PatientRecordCreateBenchmark {
+
+    @Param({"false", "true"})
+    boolean groupCommit;
+
+    ConfigurableApplicationContext context;
+    PatientRecordController controller;
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        context = EmbeddedApplication.start("create_" + groupCommit,
+            "patient.create.group-commit.enabled=" + groupCommit,
+            "patient.create.group-commit.max-delay=2ms");
+        controller = context.getBean(PatientRecordController.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+    }
+
+    @Benchmark
+    public PatientRecord createRecord() {
+        return controller.createRecord(EmbeddedApplication.patient(ThreadLocalRandom.current().nextInt()));
+    }
+}
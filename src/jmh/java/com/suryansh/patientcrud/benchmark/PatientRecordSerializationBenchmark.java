@@ -0,0 +1,150 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+package com.suryansh.patientcrud.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import com.suryansh.patientcrud.encoding.PatientRecordProtobuf;
+import com.suryansh.patientcrud.entity.PatientRecord;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Cost of {@code PatientRecord} list payloads per wire format and content encoding, as the {@code /patient} list
+ * endpoints produce them: Jackson formats with the ObjectMapper defaults Spring MVC uses, protobuf through
+ * {@link PatientRecordProtobuf}, and gzip/zstd at the levels {@code ResponseCompressionFilter} uses. The size of
+ * each payload on the wire is printed once per trial ({@code # Wire size}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PatientRecordSerializationBenchmark {
+
+    private static final TypeReference<List<PatientRecord>> RECORD_LIST = new TypeReference<List<PatientRecord>>() { };
+
+    @Param({"100", "1000", "10000"})
+    int listSize;
+
+    @Param({"json", "smile", "cbor", "protobuf"})
+    String format;
+
+    @Param({"identity", "gzip", "zstd"})
+    String encoding;
+
+    ObjectMapper mapper;
+    List<PatientRecord> records;
+    byte[] payload;
+
+    @Setup
+    public void prepare() throws IOException {
+        switch (format) {
+            case "json":
+                mapper = Jackson2ObjectMapperBuilder.json().build();
+                break;
+            case "smile":
+                mapper = Jackson2ObjectMapperBuilder.smile().build();
+                break;
+            case "cbor":
+                mapper = Jackson2ObjectMapperBuilder.cbor().build();
+                break;
+            default:
+                mapper = null;
+        }
+        records = new ArrayList<>(listSize);
+        for (int i = 0; i < listSize; i++) {
+            PatientRecord patientRecord = EmbeddedApplication.patient(i);
+            patientRecord.setPatientId((long) i + 1);
+            patientRecord.setVersion(0L);
+            records.add(patientRecord);
+        }
+        payload = serializeList();
+        System.out.printf("%n# Wire size: %d records, %s, %s: %d bytes (%.1f per record)%n",
+            listSize, format, encoding, payload.length, payload.length / (double) listSize);
+    }
+
+    @Benchmark
+    public byte[] serializeList() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = compress(bytes)) {
+            if (mapper != null) {
+                mapper.writeValue(out, records);
+            } else {
+                PatientRecordProtobuf.writeList(records, out);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public List<PatientRecord> deserializeList() throws IOException {
+        try (InputStream in = decompress(new ByteArrayInputStream(payload))) {
+            return mapper != null ? mapper.readValue(in, RECORD_LIST) : PatientRecordProtobuf.readList(in);
+        }
+    }
+
+    private OutputStream compress(OutputStream out) throws IOException {
+        switch (encoding) {
+            case "gzip":
+                return new GZIPOutputStream(out, 8192);
+            case "zstd":
+                return new ZstdOutputStream(out, 3);
+            default:
+                return out;
+        }
+    }
+
+    private InputStream decompress(InputStream in) throws IOException {
+        switch (encoding) {
+            case "gzip":
+                return new GZIPInputStream(in, 8192);
+            case "zstd":
+                return new ZstdInputStream(in);
+            default:
+                return in;
+        }
+    }
+}
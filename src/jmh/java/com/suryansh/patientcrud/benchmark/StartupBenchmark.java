@@ -0,0 +1,262 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+package com.suryansh.patientcrud.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup benchmark for the {@code fast-startup} build: starts the packaged application in a fresh JVM per run and
+ * measures the time from launching the process to the first successful {@code GET /patient/{id}}, and the process's
+ * resident memory at that point. Modes:
+ * <ul>
+ *   <li>{@code default}: eager bean initialization, no warm-up, no class-data sharing archive;</li>
+ *   <li>{@code lazy}: the {@code fast-startup} Spring profile (lazy initialization, warm-up before ready);</li>
+ *   <li>{@code fast-startup}: the same with the AppCDS archive built by {@code mvn -Pfast-startup package}.</li>
+ * </ul>
+ * All runs share an H2 file database holding one patient, created by a first, unmeasured run.
+ * <pre>
+ * mvn -Pfast-startup package -DskipTests
+ * mvn -Pbenchmark compile exec:exec@startup -Dloadtest.args="runs=5"
+ * </pre>
+ * Arguments ({@code key=value}): {@code runs} per mode (3), {@code modes} (all three), {@code directory} of the
+ * build ({@code target/fast-startup}) and {@code timeoutSeconds} per run (120). Any other {@code key=value} is
+ * passed to the application. Every run's output goes to {@code target/startup/<mode>-<run>.log}.
+ */
+public final class StartupBenchmark {
+
+    private static final String JAR = "patient-crud.jar";
+    private static final String ARCHIVE = "patient-crud.jsa";
+
+    private final Path directory;
+    private final Path logDirectory;
+    private final String databaseUrl;
+    private final List<String> applicationProperties;
+    private final Duration timeout;
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(200)).build();
+
+    private StartupBenchmark(Path directory, Path logDirectory, List<String> applicationProperties, Duration timeout) {
+        this.directory = directory;
+        this.logDirectory = logDirectory;
+        this.databaseUrl = "jdbc:h2:file:" + logDirectory.resolve("patients").toAbsolutePath() + ";MODE=MySQL";
+        this.applicationProperties = applicationProperties;
+        this.timeout = timeout;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        options.put("runs", "3");
+        options.put("modes", "default,lazy,fast-startup");
+        options.put("directory", "target/fast-startup");
+        options.put("timeoutSeconds", "120");
+        List<String> applicationProperties = new ArrayList<>();
+        for (String arg : args) {
+            String key = arg.substring(0, arg.indexOf('='));
+            if (options.containsKey(key)) {
+                options.put(key, arg.substring(key.length() + 1));
+            } else {
+                applicationProperties.add(arg);
+            }
+        }
+        Path directory = Paths.get(options.get("directory"));
+        if (!Files.exists(directory.resolve(JAR))) {
+            throw new IllegalStateException(directory.resolve(JAR) + " not found; build it with mvn -Pfast-startup package");
+        }
+        Path logDirectory = Files.createDirectories(Paths.get("target/startup"));
+        StartupBenchmark benchmark = new StartupBenchmark(directory, logDirectory, applicationProperties,
+            Duration.ofSeconds(Long.parseLong(options.get("timeoutSeconds"))));
+        long patientId = benchmark.prepareDatabase();
+
+        int runs = Integer.parseInt(options.get("runs"));
+        System.out.printf("%-14s %6s %22s %22s%n", "mode", "runs", "first GET ms (p50/min)", "RSS MB (p50/max)");
+        for (String mode : options.get("modes").split(",")) {
+            List<Long> millis = new ArrayList<>();
+            List<Long> rssKilobytes = new ArrayList<>();
+            for (int run = 0; run < runs; run++) {
+                Sample sample = benchmark.measure(mode, run, patientId);
+                millis.add(sample.millis);
+                rssKilobytes.add(sample.rssKilobytes);
+            }
+            Collections.sort(millis);
+            Collections.sort(rssKilobytes);
+            System.out.printf("%-14s %6d %14d / %-6d %14.1f / %-6.1f%n", mode, runs, median(millis), millis.get(0),
+                median(rssKilobytes) / 1024.0, rssKilobytes.get(rssKilobytes.size() - 1) / 1024.0);
+        }
+    }
+
+    /**
+     * Creates the schema and one patient with a first run, and returns the patient's ID.
+     */
+    private long prepareDatabase() throws Exception {
+        int port = freePort();
+        Process process = start("prepare", 0, port, Collections.emptyList(),
+            Arrays.asList("--spring.datasource.url=" + databaseUrl, "--spring.jpa.hibernate.ddl-auto=create"));
+        try {
+            URI patients = URI.create("http://localhost:" + port + "/patient");
+            awaitStatus(process, HttpRequest.newBuilder(patients).build());
+            HttpResponse<String> created = client.send(HttpRequest.newBuilder(patients)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"name\":\"Startup\",\"age\":40,\"address\":\"1 Station Road\"}"))
+                    .build(),
+                HttpResponse.BodyHandlers.ofString());
+            if (created.statusCode() != 200) {
+                throw new IllegalStateException("Creating the patient failed with " + created.statusCode());
+            }
+            return new ObjectMapper().readTree(created.body()).get("patientId").asLong();
+        } finally {
+            stop(process);
+        }
+    }
+
+    private Sample measure(String mode, int run, long patientId) throws Exception {
+        List<String> jvmArguments = new ArrayList<>();
+        List<String> arguments = new ArrayList<>();
+        arguments.add("--spring.datasource.url=" + databaseUrl);
+        arguments.add("--spring.jpa.hibernate.ddl-auto=none");
+        switch (mode) {
+            case "default":
+                break;
+            case "fast-startup":
+                if (!Files.exists(directory.resolve(ARCHIVE))) {
+                    throw new IllegalStateException(directory.resolve(ARCHIVE) + " not found; build it with mvn -Pfast-startup package");
+                }
+                jvmArguments.add("-XX:SharedArchiveFile=" + ARCHIVE);
+                // Fail rather than silently measure without the archive (e.g. when built by another JDK).
+                jvmArguments.add("-Xshare:on");
+                arguments.add("--spring.profiles.active=fast-startup");
+                break;
+            case "lazy":
+                arguments.add("--spring.profiles.active=fast-startup");
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown mode " + mode);
+        }
+        int port = freePort();
+        long start = System.nanoTime();
+        Process process = start(mode, run, port, jvmArguments, arguments);
+        try {
+            awaitStatus(process, HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/patient/" + patientId)).build());
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            return new Sample(millis, rssKilobytes(process.pid()));
+        } finally {
+            stop(process);
+        }
+    }
+
+    private Process start(String mode, int run, int port, List<String> jvmArguments, List<String> arguments) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArguments);
+        command.add("-jar");
+        command.add(JAR);
+        command.add("--server.port=" + port);
+        command.addAll(arguments);
+        applicationProperties.forEach(property -> command.add("--" + property));
+        return new ProcessBuilder(command)
+            .directory(directory.toFile())
+            .redirectErrorStream(true)
+            .redirectOutput(logDirectory.resolve(mode + "-" + run + ".log").toFile())
+            .start();
+    }
+
+    /**
+     * Polls until {@code request} answers 200.
+     */
+    private void awaitStatus(Process process, HttpRequest request) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("Application exited with " + process.exitValue() + "; see " + logDirectory);
+            }
+            try {
+                if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException notListeningYet) {
+                // Retried below.
+            }
+            Thread.sleep(5);
+        }
+        throw new IllegalStateException(request.uri() + " not answering 200 after " + timeout);
+    }
+
+    private static void stop(Process process) throws InterruptedException {
+        process.destroy();
+        if (!process.waitFor(30, TimeUnit.SECONDS)) {
+            process.destroyForcibly().waitFor();
+        }
+    }
+
+    /**
+     * Resident set size from {@code /proc} on Linux, else from {@code ps}.
+     */
+    private static long rssKilobytes(long pid) throws IOException, InterruptedException {
+        Path status = Paths.get("/proc", String.valueOf(pid), "status");
+        if (Files.exists(status)) {
+            for (String line : Files.readAllLines(status)) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", ""));
+                }
+            }
+        }
+        Process ps = new ProcessBuilder("ps", "-o", "rss=", "-p", String.valueOf(pid)).start();
+        String output = new String(ps.getInputStream().readAllBytes()).trim();
+        ps.waitFor();
+        return output.isEmpty() ? -1 : Long.parseLong(output);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static long median(List<Long> sorted) {
+        return sorted.get(sorted.size() / 2);
+    }
+
+    private static final class Sample {
+        final long millis;
+        final long rssKilobytes;
+
+        Sample(long millis, long rssKilobytes) {
+            this.millis = millis;
+            this.rssKilobytes = rssKilobytes;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+package com.suryansh.patientcrud.benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Compares {@code patient.threads.mode=platform} with {@code virtual}: boots the application in each mode, seeds it
+ * and drives {@code GET /patient/{id}} from a fixed number of concurrent clients, then prints throughput and latency
+ * percentiles side by side.
+ * <pre>
+ * mvn -Pbenchmark compile exec:exec@thread-model -Dloadtest.args="concurrency=400 seconds=30"
+ * </pre>
+ * Arguments ({@code key=value}): {@code concurrency} (200), {@code seconds} (20), {@code warmupSeconds} (5),
+ * {@code tableSize} (10000); any other {@code key=value} is passed to both applications, e.g.
+ * {@code server.tomcat.threads.max=50} or {@code spring.datasource.url=...} to run against MySQL.
+ */
+public final class ThreadModelLoadTest {
+
+    private static final String[] MODES = {"platform", "virtual"};
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        options.put("concurrency", "200");
+        options.put("seconds", "20");
+        options.put("warmupSeconds", "5");
+        options.put("tableSize", "10000");
+        List<String> applicationProperties = new ArrayList<>();
+        for (String arg : args) {
+            String key = arg.substring(0, arg.indexOf('='));
+            if (options.containsKey(key)) {
+                options.put(key, arg.substring(key.length() + 1));
+            } else {
+                applicationProperties.add(arg);
+            }
+        }
+        int concurrency = Integer.parseInt(options.get("concurrency"));
+        int tableSize = Integer.parseInt(options.get("tableSize"));
+
+        Map<String, Result> results = new LinkedHashMap<>();
+        for (String mode : MODES) {
+            List<String> properties = new ArrayList<>(applicationProperties);
+            properties.add("patient.threads.mode=" + mode);
+            properties.add("patient.cache.enabled=false");
+            try (ConfigurableApplicationContext context =
+                     EmbeddedApplication.startWeb("threads_" + mode, properties.toArray(new String[0]))) {
+                EmbeddedApplication.seed(context, tableSize);
+                String baseUrl = "http://localhost:" + EmbeddedApplication.port(context) + "/patient/";
+                drive(baseUrl, concurrency, tableSize, Duration.ofSeconds(Long.parseLong(options.get("warmupSeconds"))));
+                results.put(mode, drive(baseUrl, concurrency, tableSize, Duration.ofSeconds(Long.parseLong(options.get("seconds")))));
+            }
+        }
+
+        System.out.printf("%nGET /patient/{id}, %d concurrent clients, %d patients%n", concurrency, tableSize);
+        System.out.printf("%-9s %12s %8s %10s %10s %10s %10s%n", "mode", "req/s", "errors", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        results.forEach((mode, result) -> System.out.printf("%-9s %12.1f %8d %10.2f %10.2f %10.2f %10.2f%n",
+            mode, result.throughput(), result.errors,
+            result.percentileMillis(50), result.percentileMillis(99), result.percentileMillis(99.9),
+            result.latencies.getMaxValue() / 1000.0));
+    }
+
+    /**
+     * Closed loop: every client sends its next request as soon as the previous one completes.
+     */
+    private static Result drive(String baseUrl, int concurrency, int tableSize, Duration duration) throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+        Histogram latencies = new ConcurrentHistogram(Duration.ofMinutes(1).toNanos() / 1000, 3);
+        AtomicLong errors = new AtomicLong();
+        long deadline = System.nanoTime() + duration.toNanos();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrency; i++) {
+                clients.submit(() -> {
+                    while (System.nanoTime() < deadline) {
+                        long id = ThreadLocalRandom.current().nextLong(1, tableSize + 1);
+                        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + id)).GET().build();
+                        long start = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() != 200) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (IOException e) {
+                            errors.incrementAndGet();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                        latencies.recordValue((System.nanoTime() - start) / 1000);
+                    }
+                });
+            }
+        }
+        return new Result(latencies, errors.get(), duration);
+    }
+
+    private static final class Result {
+        final Histogram latencies;
+        final long errors;
+        final Duration duration;
+
+        Result(Histogram latencies, long errors, Duration duration) {
+            this.latencies = latencies;
+            this.errors = errors;
+            this.duration = duration;
+        }
+
+        double throughput() {
+            return latencies.getTotalCount() / (double) duration.getSeconds();
+        }
+
+        double percentileMillis(double percentile) {
+            return latencies.getValueAtPercentile(percentile) / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.admission;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * {@code patient.admission.enabled}: per-group bulkheads, an adaptive concurrency limit and optional per-client rate
+ * limits in front of {@code /patient}; see {@link AdmissionControlFilter}. State is exported as
+ * {@code patient.admission.*} meters and at {@code GET /patient/admission}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "patient.admission.enabled", havingValue = "true")
+public class AdmissionControlConfig {
+
+    @Bean
+    public Map<AdmissionGroup, Bulkhead> admissionBulkheads(
+        @Value("${patient.admission.bulkhead.get.max-concurrent:100}") int get,
+        @Value("${patient.admission.bulkhead.list.max-concurrent:4}") int list,
+        @Value("${patient.admission.bulkhead.write.max-concurrent:20}") int write,
+        @Value("${patient.admission.bulkhead.bulk.max-concurrent:2}") int bulk,
+        MeterRegistry meterRegistry) {
+        Map<AdmissionGroup, Bulkhead> bulkheads = new EnumMap<>(AdmissionGroup.class);
+        bulkheads.put(AdmissionGroup.GET, new Bulkhead(get));
+        bulkheads.put(AdmissionGroup.LIST, new Bulkhead(list));
+        bulkheads.put(AdmissionGroup.WRITE, new Bulkhead(write));
+        bulkheads.put(AdmissionGroup.BULK, new Bulkhead(bulk));
+        bulkheads.forEach((group, bulkhead) -> {
+            Gauge.builder("patient.admission.bulkhead.in_flight", bulkhead, Bulkhead::inFlight)
+                .description("Requests holding a bulkhead permit")
+                .tag("group", group.tag())
+                .register(meterRegistry);
+            Gauge.builder("patient.admission.bulkhead.max_concurrent", bulkhead, Bulkhead::maxConcurrent)
+                .tag("group", group.tag())
+                .register(meterRegistry);
+        });
+        return bulkheads;
+    }
+
+    @Bean
+    public AdaptiveConcurrencyLimiter adaptiveConcurrencyLimiter(
+        @Value("${patient.admission.limiter.initial-limit:20}") int initialLimit,
+        @Value("${patient.admission.limiter.min-limit:5}") int minLimit,
+        @Value("${patient.admission.limiter.max-limit:200}") int maxLimit,
+        @Value("${patient.admission.limiter.latency-threshold:250ms}") Duration latencyThreshold,
+        @Value("${patient.admission.limiter.backoff-ratio:0.9}") double backoffRatio,
+        MeterRegistry meterRegistry) {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit,
+            latencyThreshold.toNanos(), backoffRatio);
+        Gauge.builder("patient.admission.limit", limiter, AdaptiveConcurrencyLimiter::limit)
+            .description("Current adaptive concurrency limit")
+            .register(meterRegistry);
+        Gauge.builder("patient.admission.limiter.in_flight", limiter, AdaptiveConcurrencyLimiter::inFlight)
+            .description("Requests counted against the adaptive concurrency limit")
+            .register(meterRegistry);
+        return limiter;
+    }
+
+    @Bean
+    public AdmissionControlFilter admissionControlFilter(
+        Map<AdmissionGroup, Bulkhead> admissionBulkheads,
+        AdaptiveConcurrencyLimiter adaptiveConcurrencyLimiter,
+        @Value("${patient.admission.rate-limit.requests-per-second:0}") double requestsPerSecond,
+        @Value("${patient.admission.rate-limit.burst:50}") int burst,
+        @Value("${patient.admission.client-header:X-Client-Id}") String clientHeader,
+        MeterRegistry meterRegistry) {
+        ClientRateLimiter rateLimiter = null;
+        if (requestsPerSecond > 0) {
+            rateLimiter = new ClientRateLimiter(requestsPerSecond, burst);
+            Gauge.builder("patient.admission.rate_limit.clients", rateLimiter, ClientRateLimiter::activeClients)
+                .description("Clients with a token bucket")
+                .register(meterRegistry);
+        }
+        return new AdmissionControlFilter(admissionBulkheads, adaptiveConcurrencyLimiter, rateLimiter, clientHeader,
+            meterRegistry);
+    }
+
+    @Bean
+    public FilterRegistrationBean<AdmissionControlFilter> admissionControlFilterRegistration(
+        AdmissionControlFilter admissionControlFilter) {
+        FilterRegistrationBean<AdmissionControlFilter> registration = new FilterRegistrationBean<>(admissionControlFilter);
+        registration.addUrlPatterns("/patient/*", "/patient");
+        return registration;
+    }
+}
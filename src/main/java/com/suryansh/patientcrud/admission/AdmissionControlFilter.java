@@ -0,0 +1,190 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.admission;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Admission control for {@code /patient}, checked in order of cost to the caller:
+ * <ol>
+ *     <li>the client's token bucket, if rate limiting is on: 429 with {@code Retry-After} set to when the next
+ *     token arrives;</li>
+ *     <li>the bulkhead of the request's {@link AdmissionGroup}: 503;</li>
+ *     <li>the shared {@link AdaptiveConcurrencyLimiter}: 503. Bulk transfers skip it, since their run time says
+ *     nothing about overload and would only drag the limit down.</li>
+ * </ol>
+ * Rejections never wait, so a shed request costs the server next to nothing. Clients are told apart by a header
+ * (default {@code X-Client-Id}), falling back to the remote address. Permits of async requests
+ * ({@code StreamingResponseBody}) are held until the response completes.
+ */
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    private final Map<AdmissionGroup, Bulkhead> bulkheads;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final ClientRateLimiter rateLimiter;
+    private final String clientHeader;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * @param rateLimiter {@code null} to turn off per-client rate limits
+     */
+    public AdmissionControlFilter(Map<AdmissionGroup, Bulkhead> bulkheads, AdaptiveConcurrencyLimiter limiter,
+                                  ClientRateLimiter rateLimiter, String clientHeader, MeterRegistry meterRegistry) {
+        this.bulkheads = bulkheads;
+        this.limiter = limiter;
+        this.rateLimiter = rateLimiter;
+        this.clientHeader = clientHeader;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+        AdmissionGroup group = AdmissionGroup.of(request.getMethod(),
+            request.getRequestURI().substring(request.getContextPath().length()));
+        if (group == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        if (rateLimiter != null) {
+            long waitNanos = rateLimiter.tryAcquire(client(request));
+            if (waitNanos > 0) {
+                reject(response, group, "rate_limit", HttpStatus.TOO_MANY_REQUESTS,
+                    Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1)),
+                    "Request rate limit exceeded");
+                return;
+            }
+        }
+        Bulkhead bulkhead = bulkheads.get(group);
+        if (!bulkhead.tryAcquire()) {
+            reject(response, group, "bulkhead", HttpStatus.SERVICE_UNAVAILABLE, 1,
+                "Too many concurrent " + group.tag() + " requests");
+            return;
+        }
+        boolean limited = group != AdmissionGroup.BULK;
+        if (limited && !limiter.tryAcquire()) {
+            bulkhead.release();
+            reject(response, group, "limiter", HttpStatus.SERVICE_UNAVAILABLE, 1, "Service is overloaded");
+            return;
+        }
+
+        Permits permits = new Permits(bulkhead, limited ? limiter : null, response);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(permits);
+            } else {
+                permits.release();
+            }
+        }
+    }
+
+    public Map<AdmissionGroup, Bulkhead> bulkheads() {
+        return bulkheads;
+    }
+
+    public AdaptiveConcurrencyLimiter limiter() {
+        return limiter;
+    }
+
+    /**
+     * {@code null} when per-client rate limits are off.
+     */
+    public ClientRateLimiter rateLimiter() {
+        return rateLimiter;
+    }
+
+    private String client(HttpServletRequest request) {
+        String client = request.getHeader(clientHeader);
+        return client == null || client.isEmpty() ? request.getRemoteAddr() : client;
+    }
+
+    private void reject(HttpServletResponse response, AdmissionGroup group, String reason, HttpStatus status,
+                        long retryAfterSeconds, String message) throws IOException {
+        meterRegistry.counter("patient.admission.rejected", "group", group.tag(), "reason", reason).increment();
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        response.sendError(status.value(), message);
+    }
+
+    /**
+     * Releases a request's permits exactly once, on the request thread or when its async response ends.
+     */
+    private static final class Permits implements AsyncListener {
+        private final Bulkhead bulkhead;
+        private final AdaptiveConcurrencyLimiter limiter;
+        private final HttpServletResponse response;
+        private final long admittedAt = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Permits(Bulkhead bulkhead, AdaptiveConcurrencyLimiter limiter, HttpServletResponse response) {
+            this.bulkhead = bulkhead;
+            this.limiter = limiter;
+            this.response = response;
+        }
+
+        void release() {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            bulkhead.release();
+            if (limiter != null) {
+                limiter.release(System.nanoTime() - admittedAt,
+                    response.getStatus() == HttpStatus.SERVICE_UNAVAILABLE.value());
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.admission;
+
+import org.springframework.http.HttpMethod;
+
+/**
+ * The bulkheads requests under {@code /patient} are split into, so that slow full-table reads or bulk transfers
+ * can't take every thread and connection from single-record reads. Requests outside these groups (cache and patient
+ * stats, the change feed's long polls, shard administration) are not admission-controlled.
+ */
+public enum AdmissionGroup {
+
+    /** {@code GET /patient/{id}} */
+    GET("get"),
+    /** {@code GET /patient}, {@code /patient/search/**} and {@code POST /patient/multi-get} */
+    LIST("list"),
+    /** {@code POST} and {@code PUT /patient}, {@code DELETE /patient/{id}} */
+    WRITE("write"),
+    /**
+     * {@code /patient/batch}, {@code /patient/import}, {@code /patient/export} and {@code GET /patient/stream}; a
+     * stream holds its connection for the whole table, so it is kept out of the adaptive limit shared with point reads
+     */
+    BULK("bulk");
+
+    private final String tag;
+
+    AdmissionGroup(String tag) {
+        this.tag = tag;
+    }
+
+    /**
+     * Name used in property keys, metric tags and the stats endpoint.
+     */
+    public String tag() {
+        return tag;
+    }
+
+    /**
+     * @param path the request path below the context path
+     * @return the group, or {@code null} for requests that bypass admission control
+     */
+    public static AdmissionGroup of(String method, String path) {
+        if (!path.startsWith("/patient")) {
+            return null;
+        }
+        String rest = path.substring("/patient".length());
+        if (rest.endsWith("/")) {
+            rest = rest.substring(0, rest.length() - 1);
+        }
+        boolean read = HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method);
+        if (rest.isEmpty()) {
+            return read ? LIST : WRITE;
+        }
+        if (rest.charAt(0) != '/') {
+            return null;
+        }
+        String segment = rest.substring(1);
+        int slash = segment.indexOf('/');
+        String first = slash < 0 ? segment : segment.substring(0, slash);
+        switch (first) {
+            case "batch":
+            case "import":
+            case "export":
+                return BULK;
+            case "stream":
+                return read ? BULK : null;
+            case "search":
+                return read ? LIST : null;
+            case "multi-get":
+                return LIST;
+            default:
+                if (slash < 0 && isId(first)) {
+                    return read ? GET : WRITE;
+                }
+                return null;
+        }
+    }
+
+    private static boolean isId(String segment) {
+        if (segment.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < segment.length(); i++) {
+            if (!Character.isDigit(segment.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,89 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.admission;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A token bucket per client: {@code burst} requests at once, refilled at {@code requestsPerSecond}. Idle clients'
+ * buckets expire once they would be full again anyway, so the map only holds recently active clients.
+ */
+public class ClientRateLimiter {
+
+    private final double requestsPerSecond;
+    private final double burst;
+    private final Cache<String, TokenBucket> buckets;
+    private final AtomicLong rejected = new AtomicLong();
+
+    public ClientRateLimiter(double requestsPerSecond, int burst) {
+        if (requestsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("requests-per-second must be positive and burst at least 1");
+        }
+        this.requestsPerSecond = requestsPerSecond;
+        this.burst = burst;
+        this.buckets = Caffeine.newBuilder()
+            .expireAfterAccess(Duration.ofNanos((long) Math.ceil(burst / requestsPerSecond * 1e9)).plusSeconds(1))
+            .maximumSize(100_000)
+            .build();
+    }
+
+    /**
+     * Takes a token from the client's bucket.
+     *
+     * @return 0 if the request may go ahead, otherwise how many nanoseconds until the client's next token
+     */
+    public long tryAcquire(String client) {
+        long waitNanos = buckets.get(client, key -> new TokenBucket()).take(System.nanoTime());
+        if (waitNanos > 0) {
+            rejected.incrementAndGet();
+        }
+        return waitNanos;
+    }
+
+    public long rejected() {
+        return rejected.get();
+    }
+
+    public long activeClients() {
+        return buckets.estimatedSize();
+    }
+
+    private final class TokenBucket {
+        private double tokens = burst;
+        private long refilledAt = System.nanoTime();
+
+        synchronized long take(long now) {
+            tokens = Math.min(burst, tokens + (now - refilledAt) * requestsPerSecond / TimeUnit.SECONDS.toNanos(1));
+            refilledAt = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) / requestsPerSecond * TimeUnit.SECONDS.toNanos(1));
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+package com.suryansh.patientcrud.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.suryansh.patientcrud.entity.PatientRecord;
+import com.suryansh.patientcrud.event.PatientRecordChangedEvent;
+import com.suryansh.patientcrud.lookup.PatientRecordLoader;
+import com.suryansh.patientcrud.repository.PatientRecordRepository;
+import com.suryansh.patientcrud.routing.RoutingContext;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-process read-through cache in front of {@link PatientRecordRepository#findById}. Caffeine bounds it by size
+ * (W-TinyLFU eviction, which favours the recently admitted patients most lookups are for) and by time since write.
+ * <p>
+ * Committed writes reach it as {@link PatientRecordChangedEvent}s; the cache is local to this instance, so the TTL
+ * bounds how stale another instance's view can get. Misses are loaded through {@link PatientRecordLoader} from the
+ * primary: a lagging replica could otherwise put a stale or already deleted record in the cache for the whole TTL,
+ * long after the replica itself has caught up.
+ * <p>
+ * Entries are futures ({@link AsyncCache}), so that a miss is loaded by the caller outside Caffeine's map lock; a
+ * load that waits for other lookups to batch with therefore never blocks unrelated keys.
+ */
+@Component
+public class PatientRecordCache {
+
+    private final PatientRecordLoader patientRecordLoader;
+    private final boolean enabled;
+    private final AsyncCache<Long, PatientRecord> asyncCache;
+    /** Synchronous view of {@link #asyncCache}; reads through it only see completed loads. */
+    private final Cache<Long, PatientRecord> cache;
+
+    @Autowired
+    public PatientRecordCache(PatientRecordLoader patientRecordLoader,
+                              @Value("${patient.cache.enabled:true}") boolean enabled,
+                              @Value("${patient.cache.maximum-size:10000}") long maximumSize,
+                              @Value("${patient.cache.expire-after-write:10m}") Duration expireAfterWrite) {
+        this.patientRecordLoader = patientRecordLoader;
+        this.enabled = enabled;
+        this.asyncCache = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(expireAfterWrite)
+            .recordStats()
+            .buildAsync();
+        this.cache = asyncCache.synchronous();
+    }
+
+    /**
+     * Returns the record, loading it from the database on a miss. Concurrent misses on the same ID wait for a single
+     * query. The load's future is in the cache before the query runs, so a write's invalidation during the load
+     * removes it, and the record read before that write is never cached.
+     */
+    public Optional<PatientRecord> get(Long patientId) {
+        if (!enabled) {
+            return patientRecordLoader.load(patientId);
+        }
+        // Only creating the future happens inside Caffeine's compute; the winner loads it afterwards.
+        CompletableFuture<PatientRecord> load = new CompletableFuture<>();
+        CompletableFuture<PatientRecord> entry = asyncCache.get(patientId, (id, executor) -> load);
+        if (entry == load) {
+            try {
+                // A null result removes the entry again, so missing patients aren't cached.
+                load.complete(loadFromPrimary(patientId).orElse(null));
+            } catch (RuntimeException e) {
+                load.completeExceptionally(e);
+                throw e;
+            }
+        }
+        try {
+            return Optional.ofNullable(entry.join());
+        } catch (CompletionException e) {
+            // Another caller's load failed; fail the same way.
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    private Optional<PatientRecord> loadFromPrimary(Long patientId) {
+        return RoutingContext.onPrimary(() -> patientRecordLoader.load(patientId));
+    }
+
+    /**
+     * Returns the records found among {@code patientIds}, by ID. Cached ones are served from memory and all misses
+     * are loaded together with {@link PatientRecordLoader#loadAll}.
+     */
+    public Map<Long, PatientRecord> getAll(Collection<Long> patientIds) {
+        if (!enabled) {
+            return patientRecordLoader.loadAll(patientIds);
+        }
+        Set<Long> distinct = new HashSet<>(patientIds);
+        Map<Long, PatientRecord> found = new HashMap<>(cache.getAllPresent(distinct));
+        distinct.removeAll(found.keySet());
+        if (!distinct.isEmpty()) {
+            Map<Long, PatientRecord> loaded = RoutingContext.onPrimary(() -> patientRecordLoader.loadAll(distinct));
+            cache.putAll(loaded);
+            found.putAll(loaded);
+        }
+        return found;
+    }
+
+    /**
+     * Refreshes the entry from a committed write. A saved record without a version (an unconditional update, whose
+     * new version isn't known) is dropped instead, so the next read loads it.
+     */
+    @EventListener
+    public void onPatientRecordChanged(PatientRecordChangedEvent event) {
+        if (event.getPatientId() == null) {
+            return;
+        }
+        if (event.isDeleted() || event.getRecord().getVersion() == null) {
+            invalidate(event.getPatientId());
+        } else {
+            put(event.getRecord());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void put(PatientRecord patientRecord) {
+        if (enabled) {
+            cache.put(patientRecord.getPatientId(), patientRecord);
+        }
+    }
+
+    public void invalidate(Long patientId) {
+        cache.invalidate(patientId);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long estimatedSize() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * The underlying Caffeine cache, for metrics binding.
+     */
+    public Cache<Long, PatientRecord> nativeCache() {
+        return cache;
+    }
+}
@@ -0,0 +1,38 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.changes;
+
+import com.suryansh.patientcrud.entity.PatientChange;
+import java.util.List;
+import lombok.Value;
+
+/**
+ * One delivery of the change feed. {@code offset} is passed back as {@code since} to get the changes after these;
+ * it is opaque to clients (one number per shard when sharded).
+ */
+@Value
+public class PatientChangeBatch {
+
+    List<PatientChange> changes;
+    String offset;
+}
@@ -0,0 +1,217 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.changes;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Delivers the change log to waiting consumers. One scheduled tail compares the log's head with what it saw last and,
+ * when it moved, lets every subscriber read from its own offset on a virtual thread; nothing polls the database per
+ * consumer. A long-poll is answered with the first non-empty batch, or an empty one at the same offset when its wait
+ * runs out. A Server-Sent Events stream gets every batch as a {@value #EVENT_NAME} event whose ID is the offset after
+ * it, so a reconnecting {@code EventSource} resumes through {@code Last-Event-ID}.
+ */
+@Service
+public class PatientChangeFeed {
+
+    private static final Logger log = LoggerFactory.getLogger(PatientChangeFeed.class);
+
+    public static final String EVENT_NAME = "changes";
+
+    @Autowired PatientChangeLog patientChangeLog;
+
+    @Value("${patient.changes.enabled:true}") boolean enabled;
+    @Value("${patient.changes.sse-timeout:30m}") Duration sseTimeout;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ExecutorService deliveries = Executors.newThreadPerTaskExecutor(
+        Thread.ofVirtual().name("patient-change-feed-", 0).factory());
+    private volatile String lastHead;
+
+    /**
+     * Changes after {@code since}, waiting up to {@code wait} for there to be any.
+     */
+    public DeferredResult<PatientChangeBatch> poll(String since, int limit, Duration wait) {
+        PatientChangeBatch batch = patientChangeLog.read(since, limit);
+        DeferredResult<PatientChangeBatch> result = new DeferredResult<>(wait.toMillis(), batch);
+        if (!batch.getChanges().isEmpty() || wait.isZero()) {
+            result.setResult(batch);
+            return result;
+        }
+        LongPoll subscriber = new LongPoll(batch.getOffset(), limit, result);
+        result.onCompletion(() -> subscribers.remove(subscriber));
+        subscribe(subscriber);
+        return result;
+    }
+
+    /**
+     * An open-ended stream of the changes after {@code since}.
+     */
+    public SseEmitter stream(String since, int limit) {
+        SseEmitter emitter = new SseEmitter(sseTimeout.toMillis());
+        Stream subscriber = new Stream(patientChangeLog.offset(since), limit, emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(error -> subscribers.remove(subscriber));
+        subscribe(subscriber);
+        return emitter;
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    // The tail may have passed the subscriber's changes just before it was added, so it gets one look of its own.
+    private void subscribe(Subscriber subscriber) {
+        subscribers.add(subscriber);
+        deliveries.execute(subscriber::deliver);
+    }
+
+    @Scheduled(fixedDelayString = "${patient.changes.poll-interval:250}")
+    public void tail() {
+        if (!enabled || subscribers.isEmpty()) {
+            return;
+        }
+        String head;
+        try {
+            head = patientChangeLog.head();
+        } catch (DataAccessException e) {
+            // Retried on the next tick; subscribers just wait a little longer.
+            log.warn("Could not read the patient change log head: {}", e.getMessage());
+            return;
+        }
+        if (head.equals(lastHead)) {
+            return;
+        }
+        lastHead = head;
+        subscribers.forEach(subscriber -> deliveries.execute(subscriber::deliver));
+    }
+
+    @PreDestroy
+    public void close() {
+        subscribers.forEach(Subscriber::close);
+        deliveries.shutdownNow();
+    }
+
+    private abstract class Subscriber {
+
+        String offset;
+        final int limit;
+
+        Subscriber(String offset, int limit) {
+            this.offset = offset;
+            this.limit = limit;
+        }
+
+        /**
+         * Hands over whatever is new since the last delivery. Synchronized: a slow delivery may still be running
+         * when the tail moves again.
+         */
+        synchronized void deliver() {
+            if (!subscribers.contains(this)) {
+                return;
+            }
+            try {
+                PatientChangeBatch batch;
+                do {
+                    batch = patientChangeLog.read(offset, limit);
+                    if (batch.getChanges().isEmpty()) {
+                        return;
+                    }
+                    offset = batch.getOffset();
+                } while (send(batch) && batch.getChanges().size() == limit);
+            } catch (Exception e) {
+                log.warn("Dropping a change feed subscriber after a failed delivery", e);
+                subscribers.remove(this);
+                close();
+            }
+        }
+
+        /**
+         * Returns whether the subscriber wants more.
+         */
+        abstract boolean send(PatientChangeBatch batch) throws IOException;
+
+        abstract void close();
+    }
+
+    private class LongPoll extends Subscriber {
+
+        private final DeferredResult<PatientChangeBatch> result;
+
+        LongPoll(String offset, int limit, DeferredResult<PatientChangeBatch> result) {
+            super(offset, limit);
+            this.result = result;
+        }
+
+        @Override
+        boolean send(PatientChangeBatch batch) {
+            subscribers.remove(this);
+            result.setResult(batch);
+            return false;
+        }
+
+        @Override
+        void close() {
+            result.setResult(new PatientChangeBatch(Collections.emptyList(), offset));
+        }
+    }
+
+    private class Stream extends Subscriber {
+
+        private final SseEmitter emitter;
+
+        Stream(String offset, int limit, SseEmitter emitter) {
+            super(offset, limit);
+            this.emitter = emitter;
+        }
+
+        @Override
+        boolean send(PatientChangeBatch batch) throws IOException {
+            emitter.send(SseEmitter.event().name(EVENT_NAME).id(batch.getOffset()).data(batch, MediaType.APPLICATION_JSON));
+            return true;
+        }
+
+        @Override
+        void close() {
+            emitter.complete();
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.changes;
+
+import com.suryansh.patientcrud.entity.PatientChange;
+import com.suryansh.patientcrud.entity.PatientRecord;
+import com.suryansh.patientcrud.event.PatientRecordChangedEvent;
+import com.suryansh.patientcrud.exception.BadArgumentsException;
+import com.suryansh.patientcrud.sharding.ShardContext;
+import com.suryansh.patientcrud.sharding.ShardRouter;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Transactional outbox behind {@code GET /patient/changes}. Writers append to {@code patient_change} inside the
+ * transaction of the write itself, so a change is in the feed exactly when the write committed. With sharding every
+ * shard keeps its own outbox next to its records, and an offset holds one position per shard.
+ * <p>
+ * Auto-increment IDs are handed out at insert, not at commit, so a transaction still in flight can commit a smaller
+ * ID after a reader has moved past it. While it is in flight its ID shows up as a gap, and readers stop just before
+ * the first gap after their offset. A gap that is never filled (a rolled back write, or a change removed by the
+ * clean-up) is skipped once the change after it is {@code gap-timeout} old, so a write is only lost to a reader if it
+ * commits more than {@code gap-timeout} after a later write inserted its change. {@code changed_at} and that age are
+ * both taken from the database clock, so the application's clocks don't enter into it.
+ * <p>
+ * The table is kept small by a periodic clean-up: changes older than {@code retention} are dropped, and changes older
+ * than {@code compact-after} that have been superseded by a later change to the same patient are compacted away. A
+ * consumer that falls behind still sees the latest state of every patient, just not every intermediate one.
+ */
+@Service
+public class PatientChangeLog {
+
+    private static final Logger log = LoggerFactory.getLogger(PatientChangeLog.class);
+
+    private static final String INSERT = "insert into patient_change "
+        + "(patient_id, operation, name, age, address, version, changed_at) values (?, ?, ?, ?, ?, ?, localtimestamp(6))";
+    private static final String SELECT_AFTER = "select change_id, patient_id, operation, name, age, address, version, "
+        + "changed_at from patient_change where change_id > ? and change_id < ? order by change_id limit ?";
+    /** The first change after a young gap, given the ID just past the offset and the gap timeout in microseconds. */
+    private static final String FIRST_AFTER_OPEN_GAP = "select min(c.change_id) from patient_change c where c.change_id > ? "
+        + "and c.changed_at > timestampadd(microsecond, -?, localtimestamp(6)) "
+        + "and not exists (select 1 from patient_change p where p.change_id = c.change_id - 1)";
+    private static final RowMapper<PatientChange> ROW_MAPPER = (resultSet, rowNum) -> new PatientChange(
+        resultSet.getLong(1), resultSet.getLong(2), PatientRecordChangedEvent.Type.valueOf(resultSet.getString(3)),
+        resultSet.getString(4), resultSet.getObject(5, Integer.class), resultSet.getString(6),
+        resultSet.getObject(7, Long.class), resultSet.getTimestamp(8).toInstant());
+
+    @Autowired JdbcTemplate jdbcTemplate;
+    @Autowired(required = false) ShardRouter shardRouter;
+
+    @Value("${patient.changes.enabled:true}") boolean enabled;
+    @Value("${patient.changes.gap-timeout:10s}") Duration gapTimeout;
+    @Value("${patient.changes.retention:7d}") Duration retention;
+    @Value("${patient.changes.compact-after:1h}") Duration compactAfter;
+    @Value("${patient.changes.cleanup-batch-size:1000}") int cleanupBatchSize;
+
+    /**
+     * Records {@code records} as saved. Must be called inside the transaction that wrote them, after the write.
+     */
+    public void saved(List<PatientRecord> records) {
+        append(records.stream()
+            .map(record -> new Object[] {record.getPatientId(), PatientRecordChangedEvent.Type.SAVED.name(), record.getName(),
+                record.getAge(), record.getAddress(), record.getVersion()})
+            .collect(Collectors.toList()));
+    }
+
+    public void saved(PatientRecord record) {
+        saved(Collections.singletonList(record));
+    }
+
+    /**
+     * Records a delete. Must be called inside the transaction that deleted the record.
+     */
+    public void deleted(Long patientId) {
+        append(Collections.singletonList(new Object[] {patientId, PatientRecordChangedEvent.Type.DELETED.name(), null,
+            null, null, null}));
+    }
+
+    private void append(List<Object[]> rows) {
+        if (!enabled || rows.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Patient changes must be recorded in the transaction of the write");
+        }
+        jdbcTemplate.batchUpdate(INSERT, rows);
+    }
+
+    /**
+     * At most {@code limit} changes after {@code since}, oldest first, up to the first gap still open. With sharding the shards' changes are
+     * interleaved by time; each shard's own changes keep their order.
+     */
+    public PatientChangeBatch read(String since, int limit) {
+        long[] offsets = parseOffset(since);
+        List<List<PatientChange>> perSource = onEachSource(index ->
+            jdbcTemplate.query(SELECT_AFTER, ROW_MAPPER, offsets[index], readableBefore(offsets[index]), limit));
+
+        List<PatientChange> changes = new ArrayList<>();
+        int[] next = new int[perSource.size()];
+        while (changes.size() < limit) {
+            int oldest = -1;
+            for (int i = 0; i < perSource.size(); i++) {
+                if (next[i] < perSource.get(i).size() && (oldest < 0 || perSource.get(i).get(next[i]).getChangedAt()
+                    .isBefore(perSource.get(oldest).get(next[oldest]).getChangedAt()))) {
+                    oldest = i;
+                }
+            }
+            if (oldest < 0) {
+                break;
+            }
+            PatientChange change = perSource.get(oldest).get(next[oldest]++);
+            offsets[oldest] = change.getChangeId();
+            changes.add(change);
+        }
+        return new PatientChangeBatch(changes, formatOffset(offsets));
+    }
+
+    /**
+     * {@code since} in canonical form, one position per outbox; rejects offsets that aren't ours.
+     */
+    public String offset(String since) {
+        return formatOffset(parseOffset(since));
+    }
+
+    /**
+     * The offset just past the newest readable change; it moves whenever there is something new to read, including
+     * when a gap times out.
+     */
+    public String head() {
+        List<Long> heads = onEachSource(index -> jdbcTemplate.queryForObject(
+            "select coalesce(max(change_id), 0) from patient_change where change_id < ?", Long.class, readableBefore(0)));
+        return formatOffset(heads.stream().mapToLong(Long::longValue).toArray());
+    }
+
+    /**
+     * The first change ID a reader at {@code offset} has to wait for, in the current source; past the end if none.
+     */
+    private long readableBefore(long offset) {
+        Long blocked = jdbcTemplate.queryForObject(FIRST_AFTER_OPEN_GAP, Long.class, offset + 1,
+            TimeUnit.NANOSECONDS.toMicros(gapTimeout.toNanos()));
+        return blocked == null ? Long.MAX_VALUE : blocked;
+    }
+
+    @Scheduled(fixedDelayString = "${patient.changes.cleanup-interval:60000}")
+    public void cleanUp() {
+        if (!enabled) {
+            return;
+        }
+        // Cut-offs on the database clock, like changed_at itself.
+        long retentionSeconds = retention.getSeconds();
+        long compactAfterSeconds = compactAfter.getSeconds();
+        List<Long> removed = onEachSource(index -> {
+            long count = 0;
+            int deleted;
+            do {
+                deleted = jdbcTemplate.update("delete from patient_change "
+                    + "where changed_at < timestampadd(second, -?, localtimestamp(6)) limit ?", retentionSeconds, cleanupBatchSize);
+                count += deleted;
+            } while (deleted == cleanupBatchSize);
+            List<Long> superseded;
+            do {
+                superseded = jdbcTemplate.queryForList("select c.change_id from patient_change c "
+                    + "where c.changed_at < timestampadd(second, -?, localtimestamp(6)) "
+                    + "and exists (select 1 from patient_change n where n.patient_id = c.patient_id and n.change_id > c.change_id) "
+                    + "limit ?", Long.class, compactAfterSeconds, cleanupBatchSize);
+                if (!superseded.isEmpty()) {
+                    count += jdbcTemplate.update("delete from patient_change where change_id in ("
+                        + String.join(",", Collections.nCopies(superseded.size(), "?")) + ")", superseded.toArray());
+                }
+            } while (superseded.size() == cleanupBatchSize);
+            return count;
+        });
+        long total = removed.stream().mapToLong(Long::longValue).sum();
+        if (total > 0) {
+            log.info("Removed {} expired or superseded patient changes", total);
+        }
+    }
+
+    /**
+     * Runs {@code work} against every outbox, with the outbox's index in an offset; sharded, in parallel.
+     */
+    private <T> List<T> onEachSource(Function<Integer, T> work) {
+        if (shardRouter == null) {
+            return Collections.singletonList(work.apply(0));
+        }
+        List<String> shards = shardRouter.shards();
+        return new ArrayList<>(shardRouter.onEachShard(shard -> work.apply(shards.indexOf(shard))).values());
+    }
+
+    private long[] parseOffset(String offset) {
+        long[] offsets = new long[shardRouter == null ? 1 : shardRouter.shards().size()];
+        if (offset == null || offset.isEmpty()) {
+            return offsets;
+        }
+        String[] parts = offset.split(",");
+        // Shards are only ever appended, so an offset from before that still lines up; the new shards start at 0.
+        if (parts.length > offsets.length) {
+            throw new BadArgumentsException("Invalid change offset: " + offset);
+        }
+        try {
+            for (int i = 0; i < parts.length; i++) {
+                offsets[i] = Long.parseLong(parts[i].trim());
+            }
+        } catch (NumberFormatException e) {
+            throw new BadArgumentsException("Invalid change offset: " + offset);
+        }
+        return offsets;
+    }
+
+    private static String formatOffset(long[] offsets) {
+        return Arrays.stream(offsets).mapToObj(Long::toString).collect(Collectors.joining(","));
+    }
+}
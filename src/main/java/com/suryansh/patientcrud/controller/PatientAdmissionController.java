@@ -0,0 +1,74 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.controller;
+
+import com.suryansh.patientcrud.admission.AdaptiveConcurrencyLimiter;
+import com.suryansh.patientcrud.admission.AdmissionControlFilter;
+import com.suryansh.patientcrud.admission.ClientRateLimiter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping(value = "/patient/admission")
+@ConditionalOnProperty(name = "patient.admission.enabled", havingValue = "true")
+public class PatientAdmissionController {
+
+    @Autowired AdmissionControlFilter admissionControlFilter;
+
+    /**
+     * Bulkhead occupancy, the adaptive limit and rejection counts since startup.
+     */
+    @GetMapping
+    public Map<String, Object> getAdmissionStats() {
+        Map<String, Object> bulkheads = new LinkedHashMap<>();
+        admissionControlFilter.bulkheads().forEach((group, bulkhead) -> {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("maxConcurrent", bulkhead.maxConcurrent());
+            stats.put("inFlight", bulkhead.inFlight());
+            stats.put("rejected", bulkhead.rejected());
+            bulkheads.put(group.tag(), stats);
+        });
+        AdaptiveConcurrencyLimiter limiter = admissionControlFilter.limiter();
+        Map<String, Object> limiterStats = new LinkedHashMap<>();
+        limiterStats.put("limit", limiter.limit());
+        limiterStats.put("inFlight", limiter.inFlight());
+        limiterStats.put("rejected", limiter.rejected());
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("bulkheads", bulkheads);
+        body.put("limiter", limiterStats);
+        ClientRateLimiter rateLimiter = admissionControlFilter.rateLimiter();
+        if (rateLimiter != null) {
+            Map<String, Object> rateLimitStats = new LinkedHashMap<>();
+            rateLimitStats.put("clients", rateLimiter.activeClients());
+            rateLimitStats.put("rejected", rateLimiter.rejected());
+            body.put("rateLimit", rateLimitStats);
+        }
+        return body;
+    }
+}
@@ -0,0 +1,85 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.controller;
+
+import com.suryansh.patientcrud.changes.PatientChangeBatch;
+import com.suryansh.patientcrud.changes.PatientChangeFeed;
+import com.suryansh.patientcrud.exception.BadArgumentsException;
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Changes to patient records, for consumers that would otherwise poll {@code GET /patient}. Start without
+ * {@code since} (from the oldest change kept) and pass back the offset of the last batch; see {@link PatientChangeFeed}.
+ */
+@RestController
+@RequestMapping(value = "/patient/changes")
+public class PatientChangeController {
+
+    @Autowired PatientChangeFeed patientChangeFeed;
+
+    @Value("${patient.changes.max-batch-size:1000}") int maxBatchSize;
+    @Value("${patient.changes.max-wait:30}") int maxWaitSeconds;
+
+    /**
+     * Long-poll: up to {@code limit} changes after {@code since}, waiting up to {@code wait} seconds for the first.
+     */
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public DeferredResult<PatientChangeBatch> pollChanges(@RequestParam(value = "since", required = false) String since,
+                                                          @RequestParam(value = "limit", required = false) Integer limit,
+                                                          @RequestParam(value = "wait", defaultValue = "0") int wait) {
+        if (wait < 0 || wait > maxWaitSeconds) {
+            throw new BadArgumentsException("wait must be between 0 and " + maxWaitSeconds);
+        }
+        return patientChangeFeed.poll(since, resolveLimit(limit), Duration.ofSeconds(wait));
+    }
+
+    /**
+     * Server-Sent Events; a reconnect's {@code Last-Event-ID} takes precedence over {@code since}.
+     */
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@RequestParam(value = "since", required = false) String since,
+                                    @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+                                    @RequestParam(value = "limit", required = false) Integer limit) {
+        return patientChangeFeed.stream(lastEventId != null ? lastEventId : since, resolveLimit(limit));
+    }
+
+    private int resolveLimit(Integer limit) {
+        if (limit == null) {
+            return maxBatchSize;
+        }
+        if (limit < 1 || limit > maxBatchSize) {
+            throw new BadArgumentsException("limit must be between 1 and " + maxBatchSize);
+        }
+        return limit;
+    }
+}
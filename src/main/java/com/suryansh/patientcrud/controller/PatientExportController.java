@@ -0,0 +1,62 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.controller;
+
+import com.suryansh.patientcrud.exporter.PatientExportFormat;
+import com.suryansh.patientcrud.exporter.PatientExportService;
+import java.nio.charset.StandardCharsets;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+@RestController
+@RequestMapping(value = "/patient/export")
+public class PatientExportController {
+
+    @Autowired PatientExportService patientExportService;
+
+    /**
+     * Full-table snapshot as CSV or NDJSON, encoded straight off a JDBC cursor; see {@link PatientExportService}.
+     * {@code gzip=true} compresses the body ({@code Content-Encoding: gzip}).
+     */
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> exportRecords(
+        @RequestParam(value = "format", defaultValue = "csv") String format,
+        @RequestParam(value = "gzip", defaultValue = "false") boolean gzip) {
+        PatientExportFormat exportFormat = PatientExportFormat.of(format);
+        StreamingResponseBody body = out -> patientExportService.export(out, exportFormat, gzip);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+            .contentType(new MediaType(MediaType.parseMediaType(exportFormat.getMediaType()), StandardCharsets.UTF_8))
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"patients" + exportFormat.getExtension() + "\"");
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+}
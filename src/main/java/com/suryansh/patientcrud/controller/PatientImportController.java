@@ -0,0 +1,70 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.controller;
+
+import com.suryansh.patientcrud.exception.ResourceNotFoundException;
+import com.suryansh.patientcrud.importer.PatientImportFormat;
+import com.suryansh.patientcrud.importer.PatientImportProgress;
+import com.suryansh.patientcrud.importer.PatientImportService;
+import java.io.IOException;
+import java.util.List;
+import javax.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping(value = "/patient/import")
+public class PatientImportController {
+
+    @Autowired PatientImportService patientImportService;
+
+    /**
+     * Imports a CSV ({@code text/csv}) or NDJSON ({@code application/x-ndjson}) body, read straight off the request
+     * stream. Responds when the import is done with the final report; progress meanwhile is at
+     * {@code GET /patient/import}. An import cut short (unreadable input) answers 400, but keeps what it committed.
+     */
+    @PostMapping(consumes = {"text/csv", PatientRecordController.NDJSON_VALUE})
+    public ResponseEntity<PatientImportProgress> importRecords(HttpServletRequest request) throws IOException {
+        PatientImportFormat format = PatientImportFormat.forContentType(request.getContentType());
+        PatientImportProgress report = patientImportService.importRecords(request.getInputStream(), format);
+        HttpStatus status = report.getStatus() == PatientImportProgress.Status.COMPLETED ? HttpStatus.OK : HttpStatus.BAD_REQUEST;
+        return ResponseEntity.status(status).body(report);
+    }
+
+    @GetMapping
+    public List<PatientImportProgress> getImports() {
+        return patientImportService.imports();
+    }
+
+    @GetMapping(value = "{importId}")
+    public PatientImportProgress getImport(@PathVariable String importId) {
+        return patientImportService.find(importId)
+            .orElseThrow(() -> new ResourceNotFoundException("Import " + importId + " does not exist."));
+    }
+}
@@ -0,0 +1,52 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+package com.suryansh.patientcrud.controller;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.suryansh.patientcrud.cache.PatientRecordCache;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping(value = "/patient/cache")
+public class PatientRecordCacheController {
+
+    @Autowired PatientRecordCache patientRecordCache;
+
+    @GetMapping(value = "stats")
+    public Map<String, Object> getCacheStats() {
+        CacheStats stats = patientRecordCache.stats();
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("size", patientRecordCache.estimatedSize());
+        body.put("hitCount", stats.hitCount());
+        body.put("missCount", stats.missCount());
+        body.put("hitRate", stats.hitRate());
+        body.put("evictionCount", stats.evictionCount());
+        body.put("loadCount", stats.loadCount());
+        body.put("averageLoadPenaltyNanos", stats.averageLoadPenalty());
+        return body;
+    }
+}
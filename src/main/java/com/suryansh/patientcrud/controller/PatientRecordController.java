@@ -21,24 +21,58 @@
 
 package com.suryansh.patientcrud.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.suryansh.patientcrud.cache.PatientRecordCache;
 import com.suryansh.patientcrud.entity.PatientRecord;
+import com.suryansh.patientcrud.event.PatientRecordChangedEvent;
+import com.suryansh.patientcrud.exception.BadArgumentsException;
+import com.suryansh.patientcrud.exception.ConflictException;
 import com.suryansh.patientcrud.exception.InvalidRequestException;
 import com.suryansh.patientcrud.exception.ResourceNotFoundException;
+import com.suryansh.patientcrud.lookup.PatientLookup;
+import com.suryansh.patientcrud.pagination.KeysetCursor;
+import com.suryansh.patientcrud.projection.PatientFieldSet;
+import com.suryansh.patientcrud.projection.SparsePatientRecord;
 import com.suryansh.patientcrud.repository.PatientRecordRepository;
+import com.suryansh.patientcrud.repository.PatientRecordSpecifications;
+import com.suryansh.patientcrud.routing.RoutingContext;
+import com.suryansh.patientcrud.search.PatientSearchIndex;
+import com.suryansh.patientcrud.search.PatientSuggestion;
+import com.suryansh.patientcrud.service.PatientRecordBatchService;
+import com.suryansh.patientcrud.service.PatientRecordGroupCommitter;
+import com.suryansh.patientcrud.service.PatientRecordWriteService;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import javax.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping(value = "/patient")
@@ -46,48 +80,319 @@ public class PatientRecordController {
 
     private static final Logger log = LoggerFactory.getLogger(PatientRecordController.class);
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final String NDJSON_VALUE = "application/x-ndjson";
+
     @Autowired PatientRecordRepository patientRecordRepository;
-    // CRUD methods to be added
+    @Autowired PatientRecordBatchService patientRecordBatchService;
+    @Autowired PatientRecordGroupCommitter patientRecordGroupCommitter;
+    @Autowired PatientRecordWriteService patientRecordWriteService;
+    @Autowired PatientRecordCache patientRecordCache;
+    @Autowired PatientSearchIndex patientSearchIndex;
+    @Autowired ApplicationEventPublisher eventPublisher;
+    @Autowired ObjectMapper objectMapper;
+
+    @Value("${patient.page.default-size:100}") int defaultPageSize;
+    @Value("${patient.page.max-size:1000}") int maxPageSize;
+    @Value("${patient.lookup.max-ids:1000}") int maxLookupIds;
 
+    /**
+     * Keyset-paginated listing ordered by ID. When more records follow, the response carries an
+     * {@value #NEXT_CURSOR_HEADER} header whose value is passed back as {@code cursor} to fetch the next page.
+     */
     @GetMapping
-    public List<PatientRecord> getAllRecords() {
-        return patientRecordRepository.findAll();
+    public ResponseEntity<List<PatientRecord>> getAllRecords(@RequestParam(value = "cursor", required = false) String cursor,
+                                                             @RequestParam(value = "limit", required = false) Integer limit) {
+        int pageSize = resolvePageSize(limit);
+        // One extra row tells us whether a next page exists without a count query.
+        List<PatientRecord> records = patientRecordRepository.findByPatientIdGreaterThanOrderByPatientIdAsc(
+            KeysetCursor.decode(cursor), PageRequest.of(0, pageSize + 1));
+        return toPage(records, pageSize, PatientRecord::getPatientId);
+    }
+
+    /**
+     * Sparse fieldset variant of {@link #getAllRecords}: {@code fields=patientId,name} selects just those columns and
+     * returns DTOs instead of entities. {@code patientId} is always included.
+     */
+    @GetMapping(params = {"fields", "!ids"})
+    public ResponseEntity<List<SparsePatientRecord>> getAllRecordFields(@RequestParam(value = "fields") String fields,
+                                                                        @RequestParam(value = "cursor", required = false) String cursor,
+                                                                        @RequestParam(value = "limit", required = false) Integer limit) {
+        int pageSize = resolvePageSize(limit);
+        return toPage(patientRecordRepository.findFieldsPage(PatientFieldSet.parse(fields), null,
+            KeysetCursor.decode(cursor), pageSize + 1), pageSize, SparsePatientRecord::getPatientId);
+    }
+
+    /**
+     * Multi-get: {@code ids=1,2,3} returns one {@link PatientLookup} per requested ID, in the requested order, with
+     * {@code found: false} for IDs that have no record. Cached records are served from memory and the rest are read
+     * with chunked {@code IN} queries.
+     */
+    @GetMapping(params = "ids")
+    public List<PatientLookup> getRecordsByIds(@RequestParam(value = "ids") List<Long> patientIds) {
+        return lookup(patientIds);
+    }
+
+    /**
+     * {@link #getRecordsByIds} with the IDs as a JSON array in the body, for lists too long for a URL.
+     */
+    @PostMapping(value = "multi-get")
+    public List<PatientLookup> getRecordsByIdsInBody(@RequestBody List<Long> patientIds) {
+        return lookup(patientIds);
+    }
+
+    /**
+     * Filters by name prefix, address substring and an inclusive age range; every filter is optional. Paged like
+     * {@link #getAllRecords}.
+     */
+    @GetMapping(value = "search")
+    public ResponseEntity<List<PatientRecord>> searchRecords(@RequestParam(value = "name", required = false) String namePrefix,
+                                                             @RequestParam(value = "address", required = false) String address,
+                                                             @RequestParam(value = "minAge", required = false) Integer minAge,
+                                                             @RequestParam(value = "maxAge", required = false) Integer maxAge,
+                                                             @RequestParam(value = "cursor", required = false) String cursor,
+                                                             @RequestParam(value = "limit", required = false) Integer limit) {
+        int pageSize = resolvePageSize(limit);
+        Specification<PatientRecord> spec = searchSpec(namePrefix, address, minAge, maxAge);
+        return toPage(patientRecordRepository.findPage(spec, KeysetCursor.decode(cursor), pageSize + 1), pageSize,
+            PatientRecord::getPatientId);
+    }
+
+    /**
+     * {@link #searchRecords} with a sparse fieldset, see {@link #getAllRecordFields}.
+     */
+    @GetMapping(value = "search", params = "fields")
+    public ResponseEntity<List<SparsePatientRecord>> searchRecordFields(@RequestParam(value = "fields") String fields,
+                                                                        @RequestParam(value = "name", required = false) String namePrefix,
+                                                                        @RequestParam(value = "address", required = false) String address,
+                                                                        @RequestParam(value = "minAge", required = false) Integer minAge,
+                                                                        @RequestParam(value = "maxAge", required = false) Integer maxAge,
+                                                                        @RequestParam(value = "cursor", required = false) String cursor,
+                                                                        @RequestParam(value = "limit", required = false) Integer limit) {
+        int pageSize = resolvePageSize(limit);
+        Specification<PatientRecord> spec = searchSpec(namePrefix, address, minAge, maxAge);
+        return toPage(patientRecordRepository.findFieldsPage(PatientFieldSet.parse(fields), spec,
+            KeysetCursor.decode(cursor), pageSize + 1), pageSize, SparsePatientRecord::getPatientId);
     }
 
+    /**
+     * Typeahead over name and address tokens. Served from the in-memory index when
+     * {@code patient.search.index.enabled}, otherwise from a name prefix query.
+     */
+    @GetMapping(value = "search/typeahead")
+    public List<PatientSuggestion> typeahead(@RequestParam(value = "q") String query,
+                                             @RequestParam(value = "limit", defaultValue = "10") Integer limit) {
+        int pageSize = resolvePageSize(limit);
+        if (patientSearchIndex.isEnabled()) {
+            return patientSearchIndex.suggest(query, pageSize);
+        }
+        return patientRecordRepository.findPage(PatientRecordSpecifications.nameStartsWith(query), 0L, pageSize)
+            .stream()
+            .map(patientRecord -> new PatientSuggestion(patientRecord.getPatientId(), patientRecord.getName()))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Streams every record as newline-delimited JSON straight from a database cursor, so memory stays flat
+     * regardless of table size.
+     */
+    @GetMapping(value = "stream", produces = NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllRecords() {
+        ObjectWriter rowWriter = objectMapper.writerFor(PatientRecord.class)
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.setRootValueSeparator(null);
+                patientRecordRepository.forEachOrderedById(record -> {
+                    try {
+                        rowWriter.writeValue(generator, record);
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON_VALUE)).body(body);
+    }
+
+    /**
+     * Returns the record with its version as {@code ETag}, to be echoed in {@code If-Match} on a later write.
+     */
     @GetMapping(value = "{patientId}")
-    public PatientRecord getPatientById(@PathVariable(value = "patientId") Long patientId) {
-        return patientRecordRepository.findById(patientId).get();
+    public ResponseEntity<PatientRecord> getPatientById(@PathVariable(value = "patientId") Long patientId) {
+        PatientRecord patientRecord = patientRecordCache.get(patientId)
+            .orElseThrow(() -> new ResourceNotFoundException("Patient with ID " + patientId + " does not exist."));
+        return withETag(patientRecord);
+    }
+
+    /**
+     * Sparse fieldset variant of {@link #getPatientById}. A cached record is projected in memory; otherwise only the
+     * selected columns are read. No {@code ETag}, since the version may not be among them.
+     */
+    @GetMapping(value = "{patientId}", params = "fields")
+    public SparsePatientRecord getPatientFieldsById(@PathVariable(value = "patientId") Long patientId,
+                                                    @RequestParam(value = "fields") String fields) {
+        PatientFieldSet fieldSet = PatientFieldSet.parse(fields);
+        Optional<SparsePatientRecord> patientRecord = patientRecordCache.isEnabled()
+            ? patientRecordCache.get(patientId).map(cached -> SparsePatientRecord.of(fieldSet, cached))
+            : patientRecordRepository.findFieldsById(fieldSet, patientId);
+        return patientRecord
+            .orElseThrow(() -> new ResourceNotFoundException("Patient with ID " + patientId + " does not exist."));
     }
 
+    /**
+     * With {@code patient.create.group-commit.enabled} the insert is committed together with other concurrent creates;
+     * see {@link PatientRecordGroupCommitter}. The response still comes after the record is committed. IDs are
+     * assigned here, so a record that comes with one is rejected.
+     */
     @PostMapping
     public PatientRecord createRecord(@RequestBody @Valid PatientRecord patientRecord) {
-        return patientRecordRepository.save(patientRecord);
+        if (patientRecord.getPatientId() != null) {
+            throw new InvalidRequestException("PatientRecord ID must not be set on create!");
+        }
+        if (patientRecordGroupCommitter.isEnabled()) {
+            return patientRecordGroupCommitter.create(patientRecord);
+        }
+        PatientRecord savedRecord = patientRecordWriteService.create(patientRecord);
+        eventPublisher.publishEvent(PatientRecordChangedEvent.saved(savedRecord));
+        return savedRecord;
     }
 
+    /**
+     * Creates many records in chunked, JDBC-batched transactions. See {@link PatientRecordBatchService}.
+     */
+    @PostMapping(value = "batch")
+    public List<PatientRecord> createRecords(@RequestBody List<PatientRecord> patientRecords) {
+        return patientRecordBatchService.createAll(patientRecords);
+    }
+
+    @PutMapping(value = "batch")
+    public List<PatientRecord> updatePatientRecords(@RequestBody List<PatientRecord> patientRecords) {
+        return patientRecordBatchService.updateAll(patientRecords);
+    }
+
+    /**
+     * Updates a record in a single conditional {@code UPDATE}. The expected version comes from {@code If-Match},
+     * or else from the body's {@code version}; without either the update is unconditional. A version mismatch is a
+     * 409, a missing record a 404.
+     */
     @PutMapping
-    public PatientRecord updatePatientRecord(@RequestBody PatientRecord patientRecord) throws ResourceNotFoundException {
+    public ResponseEntity<PatientRecord> updatePatientRecord(@RequestBody PatientRecord patientRecord,
+                                                             @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch)
+        throws ResourceNotFoundException {
         if (patientRecord == null || patientRecord.getPatientId() == null) {
             throw new InvalidRequestException("PatientRecord or ID must not be null!");
         }
-        Optional<PatientRecord> optionalRecord = patientRecordRepository.findById(patientRecord.getPatientId());
-        if (!optionalRecord.isPresent()) {
-            throw new ResourceNotFoundException("Patient with ID " + patientRecord.getPatientId() + " does not exist.");
+        if (patientRecord.getName() == null || patientRecord.getAge() == null || patientRecord.getAddress() == null) {
+            throw new InvalidRequestException("PatientRecord name, age and address must not be null!");
         }
-        PatientRecord existingPatientRecord = optionalRecord.get();
+        Long patientId = patientRecord.getPatientId();
+        Long expectedVersion = ifMatch != null ? EntityTags.parseVersion(ifMatch) : patientRecord.getVersion();
 
-        existingPatientRecord.setName(patientRecord.getName());
-        existingPatientRecord.setAge(patientRecord.getAge());
-        existingPatientRecord.setAddress(patientRecord.getAddress());
+        if (expectedVersion == null) {
+            if (patientRecordWriteService.update(patientId, null,
+                patientRecord.getName(), patientRecord.getAge(), patientRecord.getAddress()) == 0) {
+                throw new ResourceNotFoundException("Patient with ID " + patientId + " does not exist.");
+            }
+            // The new version isn't known without reading the row back, so no ETag is returned.
+            patientRecord.setVersion(null);
+            eventPublisher.publishEvent(PatientRecordChangedEvent.saved(patientRecord));
+            return ResponseEntity.ok(patientRecord);
+        }
 
-        return patientRecordRepository.save(existingPatientRecord);
+        if (patientRecordWriteService.update(patientId, expectedVersion,
+            patientRecord.getName(), patientRecord.getAge(), patientRecord.getAddress()) == 0) {
+            throw missingOrConflicting(patientId, expectedVersion);
+        }
+        patientRecord.setVersion(expectedVersion + 1);
+        eventPublisher.publishEvent(PatientRecordChangedEvent.saved(patientRecord));
+        return withETag(patientRecord);
     }
 
+    /**
+     * Deletes a record in a single {@code DELETE}, conditional on {@code If-Match} when given.
+     */
     @DeleteMapping(value = "{patientId}")
-    public void deletePatientById(@PathVariable(value = "patientId") Long patientId) throws ResourceNotFoundException {
-        if (!patientRecordRepository.findById(patientId).isPresent()) {
-            log.error("Patient with ID {} does not exist. ", patientId);
-            throw new ResourceNotFoundException("Patient with ID " + patientId + " does not exist.");
+    public void deletePatientById(@PathVariable(value = "patientId") Long patientId,
+                                  @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch)
+        throws ResourceNotFoundException {
+        Long expectedVersion = EntityTags.parseVersion(ifMatch);
+        if (patientRecordWriteService.delete(patientId, expectedVersion) == 0) {
+            RuntimeException failure = expectedVersion == null
+                ? new ResourceNotFoundException("Patient with ID " + patientId + " does not exist.")
+                : missingOrConflicting(patientId, expectedVersion);
+            if (failure instanceof ResourceNotFoundException) {
+                log.error("Patient with ID {} does not exist. ", patientId);
+            }
+            throw failure;
+        }
+        eventPublisher.publishEvent(PatientRecordChangedEvent.deleted(patientId));
+    }
+
+    /**
+     * A conditional write touched no row: only tell a missing record from a stale version on this failure path. Asks
+     * the primary the write just went to, since a lagging replica may not have the record's latest create or delete.
+     */
+    private RuntimeException missingOrConflicting(Long patientId, Long expectedVersion) {
+        if (!RoutingContext.onPrimary(() -> patientRecordRepository.existsById(patientId))) {
+            return new ResourceNotFoundException("Patient with ID " + patientId + " does not exist.");
+        }
+        return new ConflictException("Patient with ID " + patientId + " is no longer at version " + expectedVersion + ".");
+    }
+
+    private static ResponseEntity<PatientRecord> withETag(PatientRecord patientRecord) {
+        if (patientRecord.getVersion() == null) {
+            return ResponseEntity.ok(patientRecord);
+        }
+        return ResponseEntity.ok().eTag(EntityTags.of(patientRecord.getVersion())).body(patientRecord);
+    }
+
+    private List<PatientLookup> lookup(List<Long> patientIds) {
+        if (patientIds == null || patientIds.isEmpty() || patientIds.size() > maxLookupIds) {
+            throw new BadArgumentsException("ids must list between 1 and " + maxLookupIds + " IDs");
+        }
+        if (patientIds.contains(null)) {
+            throw new BadArgumentsException("ids must not contain null");
+        }
+        Map<Long, PatientRecord> found = patientRecordCache.getAll(patientIds);
+        return patientIds.stream()
+            .map(patientId -> PatientLookup.of(patientId, found.get(patientId)))
+            .collect(Collectors.toList());
+    }
+
+    private static Specification<PatientRecord> searchSpec(String namePrefix, String address, Integer minAge, Integer maxAge) {
+        if (minAge != null && maxAge != null && minAge > maxAge) {
+            throw new BadArgumentsException("minAge must not be greater than maxAge");
+        }
+        return Specification.where(PatientRecordSpecifications.nameStartsWith(namePrefix))
+            .and(PatientRecordSpecifications.addressContains(address))
+            .and(PatientRecordSpecifications.ageAtLeast(minAge))
+            .and(PatientRecordSpecifications.ageAtMost(maxAge));
+    }
+
+    /**
+     * Trims a keyset query run with {@code pageSize + 1} rows to the page, adding the next cursor if the extra row
+     * showed there is more.
+     */
+    private static <T> ResponseEntity<List<T>> toPage(List<T> records, int pageSize, Function<T, Long> patientId) {
+        if (records.size() <= pageSize) {
+            return ResponseEntity.ok(records);
+        }
+        List<T> page = records.subList(0, pageSize);
+        return ResponseEntity.ok()
+            .header(NEXT_CURSOR_HEADER, KeysetCursor.encode(patientId.apply(page.get(pageSize - 1))))
+            .body(page);
+    }
+
+    private int resolvePageSize(Integer limit) {
+        if (limit == null) {
+            return defaultPageSize;
+        }
+        if (limit < 1 || limit > maxPageSize) {
+            throw new BadArgumentsException("limit must be between 1 and " + maxPageSize);
         }
-        patientRecordRepository.deleteById(patientId);
+        return limit;
     }
 }
\ No newline at end of file
@@ -0,0 +1,62 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.controller;
+
+import com.suryansh.patientcrud.sharding.ShardRebalanceReport;
+import com.suryansh.patientcrud.sharding.ShardRebalancer;
+import com.suryansh.patientcrud.sharding.ShardRouter;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping(value = "/patient/shards")
+@ConditionalOnProperty(name = "patient.sharding.shard-urls")
+public class PatientShardController {
+
+    @Autowired ShardRouter shardRouter;
+    @Autowired ShardRebalancer shardRebalancer;
+    @Autowired JdbcTemplate jdbcTemplate;
+
+    /**
+     * Shard name to the number of records stored on it.
+     */
+    @GetMapping
+    public Map<String, Long> getShards() {
+        return shardRouter.onEachShard(shard -> jdbcTemplate.queryForObject("select count(*) from patient_record", Long.class));
+    }
+
+    /**
+     * Moves misplaced records to their owning shard while the service keeps running; see {@link ShardRebalancer}.
+     * Answers 409 while another rebalance is running.
+     */
+    @PostMapping(value = "rebalance")
+    public ShardRebalanceReport rebalance() {
+        return shardRebalancer.rebalance();
+    }
+}
@@ -0,0 +1,45 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+package com.suryansh.patientcrud.controller;
+
+import com.suryansh.patientcrud.stats.PatientStatistics;
+import com.suryansh.patientcrud.stats.PatientStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping(value = "/patient/stats")
+public class PatientStatsController {
+
+    @Autowired PatientStatistics patientStatistics;
+
+    /**
+     * Patient counts in total, per age bracket and per city, from counters kept up to date by every write; see
+     * {@link PatientStatistics}.
+     */
+    @GetMapping
+    public PatientStats getStats() {
+        return patientStatistics.get();
+    }
+}
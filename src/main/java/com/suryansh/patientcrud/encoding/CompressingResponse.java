@@ -0,0 +1,325 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.encoding;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.List;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+/**
+ * Holds back the first {@code minResponseSize} bytes of the body. If the body grows past that, the response is
+ * compressed from there on; if it ends first, it goes out as is with a {@code Content-Length}. A flush while bytes
+ * are held back is deferred, since committing the response would force the decision early. Bodies of other content
+ * types, or that the application already encoded, pass straight through.
+ */
+class CompressingResponse extends HttpServletResponseWrapper {
+
+    private enum State { BUFFERING, COMPRESSING, PASSING_THROUGH }
+
+    private final ContentEncoding encoding;
+    private final int level;
+    private final int minResponseSize;
+    private final List<MediaType> mimeTypes;
+    private final ByteArrayOutputStream buffer;
+    private State state = State.BUFFERING;
+    private boolean typeChecked;
+    private long contentLength = -1;
+    private OutputStream compressor;
+    private ServletOutputStream outputStream;
+    private PrintWriter writer;
+
+    CompressingResponse(HttpServletResponse response, ContentEncoding encoding, int level, int minResponseSize,
+                        List<MediaType> mimeTypes) {
+        super(response);
+        this.encoding = encoding;
+        this.level = level;
+        this.minResponseSize = minResponseSize;
+        this.mimeTypes = mimeTypes;
+        this.buffer = new ByteArrayOutputStream(Math.min(minResponseSize, 8192));
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() has already been called");
+        }
+        if (outputStream == null) {
+            outputStream = new BodyStream();
+        }
+        return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            if (outputStream != null) {
+                throw new IllegalStateException("getOutputStream() has already been called");
+            }
+            outputStream = new BodyStream();
+            writer = new PrintWriter(new OutputStreamWriter(outputStream, getCharacterEncoding()));
+        }
+        return writer;
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        setContentLengthLong(len);
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+        if (state == State.PASSING_THROUGH) {
+            super.setContentLengthLong(len);
+        } else {
+            contentLength = len;
+        }
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+            setContentLengthLong(Long.parseLong(value));
+        } else {
+            super.setHeader(name, value);
+        }
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+            setContentLengthLong(Long.parseLong(value));
+        } else {
+            super.addHeader(name, value);
+        }
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        flushBody();
+        if (state != State.BUFFERING) {
+            super.flushBuffer();
+        }
+    }
+
+    @Override
+    public void resetBuffer() {
+        super.resetBuffer();
+        buffer.reset();
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        buffer.reset();
+        contentLength = -1;
+        typeChecked = false;
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+        discard();
+        super.sendError(sc, msg);
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+        discard();
+        super.sendError(sc);
+    }
+
+    /**
+     * Ends the body: closes the compressed stream, or writes out what was held back.
+     */
+    void finish() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        if (state == State.COMPRESSING) {
+            compressor.close();
+        } else if (state == State.BUFFERING) {
+            passThrough(true);
+        }
+    }
+
+    /**
+     * Ends the body of a handler that threw: closes the compressed stream, or drops what was held back so the
+     * container can still send its error page.
+     */
+    void abandon() throws IOException {
+        if (state == State.COMPRESSING) {
+            compressor.close();
+        } else {
+            discard();
+        }
+    }
+
+    private void discard() {
+        buffer.reset();
+        state = State.PASSING_THROUGH;
+    }
+
+    private void write(byte[] bytes, int offset, int length) throws IOException {
+        checkType();
+        switch (state) {
+            case COMPRESSING:
+                compressor.write(bytes, offset, length);
+                break;
+            case PASSING_THROUGH:
+                getResponse().getOutputStream().write(bytes, offset, length);
+                break;
+            default:
+                buffer.write(bytes, offset, length);
+                if (buffer.size() >= minResponseSize) {
+                    startCompressing();
+                }
+        }
+    }
+
+    private void flushBody() throws IOException {
+        // Server-Sent Events flush before their first event; they must not wait for one.
+        checkType();
+        if (state == State.COMPRESSING) {
+            compressor.flush();
+        } else if (state == State.PASSING_THROUGH) {
+            getResponse().getOutputStream().flush();
+        }
+    }
+
+    private void checkType() throws IOException {
+        if (state == State.BUFFERING && !typeChecked) {
+            typeChecked = true;
+            if (!compressible()) {
+                passThrough(false);
+            }
+        }
+    }
+
+    private boolean compressible() {
+        if (containsHeader(HttpHeaders.CONTENT_ENCODING) || getContentType() == null) {
+            return false;
+        }
+        MediaType contentType = MediaType.parseMediaType(getContentType());
+        return mimeTypes.stream().anyMatch(mimeType -> mimeType.includes(contentType));
+    }
+
+    private void startCompressing() throws IOException {
+        state = State.COMPRESSING;
+        super.setHeader(HttpHeaders.CONTENT_ENCODING, encoding.token());
+        // The container finishes its own stream when the response completes; the compressor only ends its frame.
+        compressor = encoding.compress(new FilterOutputStream(getResponse().getOutputStream()) {
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                out.write(bytes, offset, length);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        }, level);
+        buffer.writeTo(compressor);
+        buffer.reset();
+    }
+
+    /**
+     * @param complete whether the held-back bytes are the whole body, so their length is the content length
+     */
+    private void passThrough(boolean complete) throws IOException {
+        state = State.PASSING_THROUGH;
+        if (complete && buffer.size() > 0) {
+            super.setContentLengthLong(buffer.size());
+        } else if (contentLength >= 0) {
+            super.setContentLengthLong(contentLength);
+        }
+        if (buffer.size() > 0) {
+            buffer.writeTo(getResponse().getOutputStream());
+            buffer.reset();
+        }
+    }
+
+    private final class BodyStream extends ServletOutputStream {
+
+        private final byte[] single = new byte[1];
+
+        @Override
+        public void write(int b) throws IOException {
+            single[0] = (byte) b;
+            CompressingResponse.this.write(single, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            CompressingResponse.this.write(bytes, offset, length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            flushBody();
+        }
+
+        @Override
+        public boolean isReady() {
+            if (state != State.PASSING_THROUGH) {
+                return true;
+            }
+            try {
+                return getResponse().getOutputStream().isReady();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Non-blocking writers go uncompressed: holding bytes back or compressing them would hide the container's
+         * {@link #isReady()} from the writer.
+         */
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            if (state == State.COMPRESSING) {
+                throw new IllegalStateException("The write listener must be set before the body is written");
+            }
+            try {
+                if (state == State.BUFFERING) {
+                    passThrough(false);
+                }
+                getResponse().getOutputStream().setWriteListener(writeListener);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.encoding;
+
+import com.github.luben.zstd.ZstdOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Response {@code Content-Encoding}s {@link ResponseCompressionFilter} can apply. Both streams flush what they have
+ * compressed so far on {@code flush()}, so streamed responses keep moving.
+ */
+public enum ContentEncoding {
+
+    ZSTD("zstd") {
+        @Override
+        OutputStream compress(OutputStream out, int level) throws IOException {
+            return new ZstdOutputStream(out, level);
+        }
+    },
+    GZIP("gzip") {
+        @Override
+        OutputStream compress(OutputStream out, int level) throws IOException {
+            return new GZIPOutputStream(out, 8192, true);
+        }
+    };
+
+    private final String token;
+
+    ContentEncoding(String token) {
+        this.token = token;
+    }
+
+    /**
+     * The {@code Accept-Encoding} / {@code Content-Encoding} token.
+     */
+    public String token() {
+        return token;
+    }
+
+    /**
+     * @param level compression level; only zstd's is configurable, gzip uses the JDK default
+     */
+    abstract OutputStream compress(OutputStream out, int level) throws IOException;
+
+    public static ContentEncoding of(String token) {
+        for (ContentEncoding encoding : values()) {
+            if (encoding.token.equalsIgnoreCase(token.trim())) {
+                return encoding;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported content encoding: " + token);
+    }
+}
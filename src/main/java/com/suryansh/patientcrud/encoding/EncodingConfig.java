@@ -0,0 +1,108 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.encoding;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.github.luben.zstd.util.Native;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.servlet.DispatcherType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Payload formats besides JSON, chosen by {@code Accept} for responses and {@code Content-Type} for request bodies:
+ * CBOR ({@code application/cbor}), Smile ({@code application/x-jackson-smile}) and, for {@code PatientRecord}s only,
+ * Protocol Buffers ({@code application/x-protobuf}). JSON stays the default for {@code Accept: *}{@code /*}. Responses
+ * are also compressed with zstd or gzip above a size threshold, see {@link ResponseCompressionFilter}.
+ */
+@Configuration
+public class EncodingConfig implements WebMvcConfigurer {
+
+    private static final Logger log = LoggerFactory.getLogger(EncodingConfig.class);
+
+    /**
+     * Takes the place of Spring MVC's default CBOR converter, so that {@code spring.jackson.*} settings apply.
+     */
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.createXmlMapper(false).factory(new CBORFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.createXmlMapper(false).factory(new SmileFactory()).build());
+    }
+
+    /**
+     * Appended rather than declared as a bean: Boot puts converter beans of new types first, and the first converter
+     * that can write a type is what a client gets when it accepts anything.
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new PatientRecordProtobufHttpMessageConverter());
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "patient.compression.enabled", havingValue = "true", matchIfMissing = true)
+    public FilterRegistrationBean<ResponseCompressionFilter> responseCompressionFilter(
+        @Value("${patient.compression.encodings:zstd,gzip}") List<String> encodingTokens,
+        @Value("${patient.compression.zstd-level:3}") int zstdLevel,
+        @Value("${patient.compression.min-response-size:2048}") int minResponseSize,
+        @Value("${patient.compression.mime-types:application/json,application/x-ndjson,application/cbor,"
+            + "application/x-jackson-smile,application/x-protobuf}") List<String> mimeTypes) {
+        List<ContentEncoding> encodings = encodingTokens.stream().map(ContentEncoding::of).collect(Collectors.toList());
+        if (encodings.contains(ContentEncoding.ZSTD) && !zstdAvailable()) {
+            encodings.remove(ContentEncoding.ZSTD);
+        }
+        ResponseCompressionFilter filter = new ResponseCompressionFilter(encodings, zstdLevel, minResponseSize,
+            mimeTypes.stream().map(MediaType::parseMediaType).collect(Collectors.toList()));
+        FilterRegistrationBean<ResponseCompressionFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns("/patient/*", "/patient");
+        registration.setDispatcherTypes(EnumSet.of(DispatcherType.REQUEST, DispatcherType.ASYNC));
+        return registration;
+    }
+
+    private static boolean zstdAvailable() {
+        try {
+            Native.load();
+            return true;
+        } catch (UnsatisfiedLinkError | RuntimeException e) {
+            log.warn("zstd native library not available on this platform, compressing with the other encodings only", e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.encoding;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import com.suryansh.patientcrud.entity.PatientRecord;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Protocol Buffers encoding of {@link PatientRecord} and lists of them, as described by
+ * {@code proto/patient_record.proto}. Written against the wire format directly rather than generated message classes,
+ * so records go to and from the entity without an intermediate copy and the build needs no {@code protoc}.
+ */
+public final class PatientRecordProtobuf {
+
+    private static final int PATIENT_ID = 1;
+    private static final int NAME = 2;
+    private static final int AGE = 3;
+    private static final int ADDRESS = 4;
+    private static final int VERSION = 5;
+    private static final int RECORDS = 1;
+
+    private static final int PATIENT_ID_TAG = PATIENT_ID << 3 | WireFormat.WIRETYPE_VARINT;
+    private static final int NAME_TAG = NAME << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int AGE_TAG = AGE << 3 | WireFormat.WIRETYPE_VARINT;
+    private static final int ADDRESS_TAG = ADDRESS << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int VERSION_TAG = VERSION << 3 | WireFormat.WIRETYPE_VARINT;
+    private static final int RECORDS_TAG = RECORDS << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+
+    private PatientRecordProtobuf() {
+    }
+
+    public static void write(PatientRecord patientRecord, OutputStream out) throws IOException {
+        CodedOutputStream output = CodedOutputStream.newInstance(out);
+        writeFields(patientRecord, output);
+        output.flush();
+    }
+
+    /**
+     * Writes a {@code PatientRecordList}.
+     */
+    public static void writeList(Collection<PatientRecord> patientRecords, OutputStream out) throws IOException {
+        CodedOutputStream output = CodedOutputStream.newInstance(out);
+        for (PatientRecord patientRecord : patientRecords) {
+            output.writeUInt32NoTag(RECORDS_TAG);
+            output.writeUInt32NoTag(size(patientRecord));
+            writeFields(patientRecord, output);
+        }
+        output.flush();
+    }
+
+    public static PatientRecord read(InputStream in) throws IOException {
+        return readFields(CodedInputStream.newInstance(in));
+    }
+
+    /**
+     * Reads a {@code PatientRecordList}.
+     */
+    public static List<PatientRecord> readList(InputStream in) throws IOException {
+        CodedInputStream input = CodedInputStream.newInstance(in);
+        List<PatientRecord> patientRecords = new ArrayList<>();
+        for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+            if (tag == RECORDS_TAG) {
+                int limit = input.pushLimit(input.readRawVarint32());
+                patientRecords.add(readFields(input));
+                input.popLimit(limit);
+            } else {
+                input.skipField(tag);
+            }
+        }
+        return patientRecords;
+    }
+
+    private static void writeFields(PatientRecord patientRecord, CodedOutputStream output) throws IOException {
+        if (patientRecord.getPatientId() != null) {
+            output.writeInt64(PATIENT_ID, patientRecord.getPatientId());
+        }
+        if (patientRecord.getName() != null) {
+            output.writeString(NAME, patientRecord.getName());
+        }
+        if (patientRecord.getAge() != null) {
+            output.writeInt32(AGE, patientRecord.getAge());
+        }
+        if (patientRecord.getAddress() != null) {
+            output.writeString(ADDRESS, patientRecord.getAddress());
+        }
+        if (patientRecord.getVersion() != null) {
+            output.writeInt64(VERSION, patientRecord.getVersion());
+        }
+    }
+
+    private static int size(PatientRecord patientRecord) {
+        int size = 0;
+        if (patientRecord.getPatientId() != null) {
+            size += CodedOutputStream.computeInt64Size(PATIENT_ID, patientRecord.getPatientId());
+        }
+        if (patientRecord.getName() != null) {
+            size += CodedOutputStream.computeStringSize(NAME, patientRecord.getName());
+        }
+        if (patientRecord.getAge() != null) {
+            size += CodedOutputStream.computeInt32Size(AGE, patientRecord.getAge());
+        }
+        if (patientRecord.getAddress() != null) {
+            size += CodedOutputStream.computeStringSize(ADDRESS, patientRecord.getAddress());
+        }
+        if (patientRecord.getVersion() != null) {
+            size += CodedOutputStream.computeInt64Size(VERSION, patientRecord.getVersion());
+        }
+        return size;
+    }
+
+    /**
+     * Reads fields up to the end of the input or its current limit. Fields this version doesn't know, or
+     * with an unexpected wire type, are skipped.
+     */
+    private static PatientRecord readFields(CodedInputStream input) throws IOException {
+        // Setters rather than the builder: absent fields stay null and are left to validation.
+        PatientRecord patientRecord = new PatientRecord();
+        for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+            switch (tag) {
+                case PATIENT_ID_TAG:
+                    patientRecord.setPatientId(input.readInt64());
+                    break;
+                case NAME_TAG:
+                    patientRecord.setName(input.readString());
+                    break;
+                case AGE_TAG:
+                    patientRecord.setAge(input.readInt32());
+                    break;
+                case ADDRESS_TAG:
+                    patientRecord.setAddress(input.readString());
+                    break;
+                case VERSION_TAG:
+                    patientRecord.setVersion(input.readInt64());
+                    break;
+                default:
+                    input.skipField(tag);
+            }
+        }
+        return patientRecord;
+    }
+}
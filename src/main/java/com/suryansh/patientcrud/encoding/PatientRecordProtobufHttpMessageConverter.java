@@ -0,0 +1,105 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.encoding;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.suryansh.patientcrud.entity.PatientRecord;
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.lang.Nullable;
+
+/**
+ * Reads and writes {@link PatientRecord} and collections of them as {@value #PROTOBUF_VALUE}, see
+ * {@link PatientRecordProtobuf}. Any other type is left to the other converters.
+ */
+public class PatientRecordProtobufHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    public static final String PROTOBUF_VALUE = "application/x-protobuf";
+    public static final MediaType PROTOBUF = MediaType.parseMediaType(PROTOBUF_VALUE);
+
+    public PatientRecordProtobufHttpMessageConverter() {
+        super(PROTOBUF);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return PatientRecord.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(Type type, @Nullable Class<?> contextClass, @Nullable MediaType mediaType) {
+        return isRecordOrCollection(type) && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(@Nullable Type type, Class<?> clazz, @Nullable MediaType mediaType) {
+        return (type != null ? isRecordOrCollection(type) : supports(clazz)) && canWrite(mediaType);
+    }
+
+    @Override
+    public Object read(Type type, @Nullable Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        try {
+            return isCollection(type)
+                ? PatientRecordProtobuf.readList(inputMessage.getBody())
+                : PatientRecordProtobuf.read(inputMessage.getBody());
+        } catch (InvalidProtocolBufferException e) {
+            throw new HttpMessageNotReadableException("Invalid protobuf body: " + e.getMessage(), e, inputMessage);
+        }
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        return read(clazz, null, inputMessage);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void writeInternal(Object body, @Nullable Type type, HttpOutputMessage outputMessage) throws IOException {
+        if (body instanceof Collection) {
+            PatientRecordProtobuf.writeList((Collection<PatientRecord>) body, outputMessage.getBody());
+        } else {
+            PatientRecordProtobuf.write((PatientRecord) body, outputMessage.getBody());
+        }
+    }
+
+    private static boolean isRecordOrCollection(Type type) {
+        if (type instanceof Class) {
+            return PatientRecord.class.isAssignableFrom((Class<?>) type);
+        }
+        return isCollection(type)
+            && ((ParameterizedType) type).getActualTypeArguments()[0] == PatientRecord.class;
+    }
+
+    private static boolean isCollection(Type type) {
+        return type instanceof ParameterizedType
+            && ((ParameterizedType) type).getRawType() instanceof Class
+            && Collection.class.isAssignableFrom((Class<?>) ((ParameterizedType) type).getRawType());
+    }
+}
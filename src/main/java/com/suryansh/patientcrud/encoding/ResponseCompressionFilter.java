@@ -0,0 +1,139 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.encoding;
+
+import java.io.IOException;
+import java.util.List;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Compresses response bodies of the configured content types once they exceed {@code minResponseSize}, with the
+ * first of the configured encodings the client accepts; see {@link CompressingResponse}. Async responses
+ * ({@code StreamingResponseBody}) are finished when their async dispatch ends. A handler that throws still gets its
+ * compressed stream closed, so the encoder's native buffers are released.
+ */
+public class ResponseCompressionFilter extends OncePerRequestFilter {
+
+    private static final String RESPONSE_ATTRIBUTE = ResponseCompressionFilter.class.getName() + ".RESPONSE";
+
+    private final List<ContentEncoding> encodings;
+    private final int zstdLevel;
+    private final int minResponseSize;
+    private final List<MediaType> mimeTypes;
+
+    /**
+     * @param encodings in order of preference
+     */
+    public ResponseCompressionFilter(List<ContentEncoding> encodings, int zstdLevel, int minResponseSize,
+                                     List<MediaType> mimeTypes) {
+        this.encodings = encodings;
+        this.zstdLevel = zstdLevel;
+        this.minResponseSize = minResponseSize;
+        this.mimeTypes = mimeTypes;
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+        CompressingResponse compressing = (CompressingResponse) request.getAttribute(RESPONSE_ATTRIBUTE);
+        if (compressing == null) {
+            if (isAsyncDispatch(request)) {
+                filterChain.doFilter(request, response);
+                return;
+            }
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            ContentEncoding encoding = negotiate(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+            if (encoding == null) {
+                filterChain.doFilter(request, response);
+                return;
+            }
+            compressing = new CompressingResponse(response, encoding, encoding == ContentEncoding.ZSTD ? zstdLevel : -1,
+                minResponseSize, mimeTypes);
+            request.setAttribute(RESPONSE_ATTRIBUTE, compressing);
+        }
+        boolean completed = false;
+        try {
+            filterChain.doFilter(request, compressing);
+            completed = true;
+        } finally {
+            if (!request.isAsyncStarted()) {
+                if (completed) {
+                    compressing.finish();
+                } else {
+                    compressing.abandon();
+                }
+            }
+        }
+    }
+
+    /**
+     * The most preferred configured encoding that {@code Accept-Encoding} doesn't rule out with {@code q=0}.
+     */
+    ContentEncoding negotiate(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isEmpty()) {
+            return null;
+        }
+        for (ContentEncoding encoding : encodings) {
+            Double quality = quality(acceptEncoding, encoding.token());
+            if (quality == null) {
+                quality = quality(acceptEncoding, "*");
+            }
+            if (quality != null && quality > 0) {
+                return encoding;
+            }
+        }
+        return null;
+    }
+
+    private static Double quality(String acceptEncoding, String token) {
+        for (String entry : acceptEncoding.split(",")) {
+            String[] parts = entry.split(";");
+            if (!parts[0].trim().equalsIgnoreCase(token)) {
+                continue;
+            }
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(parameter.substring(2));
+                    } catch (NumberFormatException e) {
+                        return 0.0;
+                    }
+                }
+            }
+            return 1.0;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,79 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.entity;
+
+import com.suryansh.patientcrud.event.PatientRecordChangedEvent;
+import java.time.Instant;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outbox row: one committed write to {@code patient_record}, carrying the record as written ({@code name},
+ * {@code age} and {@code address} are null for deletes, {@code version} when it isn't known). The auto-increment
+ * {@code changeId} is the feed offset, which is why the rows are inserted through JDBC rather than batched by
+ * Hibernate; see {@code PatientChangeLog}.
+ */
+@Entity
+@Table(name = "patient_change", indexes = {
+    @Index(name = "idx_patient_change_changed_at", columnList = "changedAt"),
+    @Index(name = "idx_patient_change_patient", columnList = "patientId, changeId")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PatientChange {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long changeId;
+
+    @Column(nullable = false)
+    private Long patientId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 8)
+    private PatientRecordChangedEvent.Type operation;
+
+    private String name;
+
+    private Integer age;
+
+    private String address;
+
+    private Long version;
+
+    @Column(nullable = false)
+    private Instant changedAt;
+}
@@ -21,34 +21,79 @@
 
 package com.suryansh.patientcrud.entity;
 
+import com.suryansh.patientcrud.sharding.PatientIdGenerator;
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Table;
+import javax.persistence.Version;
+import javax.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
+/**
+ * Search indexes: {@code name} serves prefix lookups, {@code age} range filters. {@code address} has none: it is
+ * only searched by substring, which a B-tree can't serve, so an index there would just slow down writes.
+ */
 @Entity
-@Table(name = "patient_record")
+@Table(name = "patient_record", indexes = {
+    @Index(name = "idx_patient_record_name", columnList = "name"),
+    @Index(name = "idx_patient_record_age", columnList = "age")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class PatientRecord {
+    /**
+     * IDs are reserved in blocks of 50 (pooled-lo), so inserts don't pay a round trip each and can be JDBC batched.
+     * The generator keeps the {@code hibernate_sequence} name that {@code AUTO} used, so an existing table (or
+     * sequence) carries on from its current value. With sharding the ID is a Snowflake ID set before the insert,
+     * which {@link PatientIdGenerator} keeps.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "patient_record_id")
+    @GenericGenerator(
+        name = "patient_record_id",
+        strategy = "com.suryansh.patientcrud.sharding.PatientIdGenerator",
+        parameters = {
+            @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "hibernate_sequence"),
+            @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = "50"),
+            @Parameter(name = SequenceStyleGenerator.OPT_PARAM, value = "pooled-lo")
+        })
     private Long patientId;
 
     @NonNull
+    @NotNull
     private String name;
 
     @NonNull
+    @NotNull
     private Integer age;
 
     @NonNull
+    @NotNull
     private String address;
+
+    /**
+     * Optimistic-locking version, also served as the record's {@code ETag}. Existing rows start at 0.
+     */
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
+
+    public PatientRecord(Long patientId, @NonNull String name, @NonNull Integer age, @NonNull String address) {
+        this(patientId, name, age, address, null);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,51 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+package com.suryansh.patientcrud.event;
+
+import com.suryansh.patientcrud.entity.PatientRecord;
+import lombok.Value;
+
+/**
+ * Published after a patient record write has committed, so in-process views of the table (cache, search index)
+ * can follow it. {@code record} is null for deletes.
+ */
+@Value
+public class PatientRecordChangedEvent {
+
+    public enum Type { SAVED, DELETED }
+
+    Type type;
+    Long patientId;
+    PatientRecord record;
+
+    public static PatientRecordChangedEvent saved(PatientRecord record) {
+        return new PatientRecordChangedEvent(Type.SAVED, record.getPatientId(), record);
+    }
+
+    public static PatientRecordChangedEvent deleted(Long patientId) {
+        return new PatientRecordChangedEvent(Type.DELETED, patientId, null);
+    }
+
+    public boolean isDeleted() {
+        return type == Type.DELETED;
+    }
+}
@@ -0,0 +1,53 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.exception;
+
+import com.suryansh.patientcrud.entity.PatientRecord;
+import java.util.List;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * A write that spans several shards, one transaction each, committed on some and rolled back on others. Callers that
+ * retry must only retry {@link #getFailed()}.
+ */
+@ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
+public class PartiallyCommittedException extends RuntimeException {
+
+    private final List<PatientRecord> committed;
+    private final List<PatientRecord> failed;
+
+    public PartiallyCommittedException(List<PatientRecord> committed, List<PatientRecord> failed, Throwable cause) {
+        super(committed.size() + " records were committed and " + failed.size() + " rolled back: " + cause.getMessage(), cause);
+        this.committed = List.copyOf(committed);
+        this.failed = List.copyOf(failed);
+    }
+
+    public List<PatientRecord> getCommitted() {
+        return committed;
+    }
+
+    public List<PatientRecord> getFailed() {
+        return failed;
+    }
+}
@@ -0,0 +1,83 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+package com.suryansh.patientcrud.execution;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.Executors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+
+/**
+ * {@code patient.threads.mode=virtual}: Tomcat runs each request on its own virtual thread, as do MVC async bodies
+ * ({@code StreamingResponseBody}), so a request blocked on MySQL no longer holds a platform thread. Concurrency is
+ * bounded by {@link ConcurrencyLimitFilter} instead, sized from the connection pool by default.
+ * <p>
+ * The MySQL driver still uses {@code synchronized}, which pins the carrier thread while a query is in flight; the
+ * concurrency limit is what keeps that from exhausting the carriers.
+ */
+@Configuration
+@ConditionalOnProperty(name = "patient.threads.mode", havingValue = "virtual")
+public class VirtualThreadConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadConfig.class);
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        log.info("Handling requests on virtual threads");
+        return protocolHandler -> protocolHandler.setExecutor(
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("http-vt-", 0).factory()));
+    }
+
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+        AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+    public AsyncTaskExecutor applicationTaskExecutor() {
+        return new TaskExecutorAdapter(Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("task-vt-", 0).factory()));
+    }
+
+    @Bean
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter(
+        @Value("${patient.threads.max-concurrent-requests:${spring.datasource.hikari.maximum-pool-size:10}}") int maxConcurrentRequests,
+        @Value("${patient.threads.acquire-timeout-ms:2000}") long acquireTimeoutMillis,
+        MeterRegistry meterRegistry) {
+        ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(maxConcurrentRequests, acquireTimeoutMillis);
+        Gauge.builder("patient.requests.in_flight", filter, ConcurrencyLimitFilter::inFlight)
+            .description("Requests holding a concurrency permit")
+            .register(meterRegistry);
+        Gauge.builder("patient.requests.waiting", filter, ConcurrencyLimitFilter::waiting)
+            .description("Requests waiting for a concurrency permit")
+            .register(meterRegistry);
+        FilterRegistrationBean<ConcurrencyLimitFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns("/patient/*", "/patient");
+        return registration;
+    }
+}
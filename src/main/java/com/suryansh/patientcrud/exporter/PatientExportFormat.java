@@ -0,0 +1,72 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.exporter;
+
+import com.suryansh.patientcrud.exception.BadArgumentsException;
+import java.util.Locale;
+
+public enum PatientExportFormat {
+    CSV("text/csv", ".csv"),
+    NDJSON("application/x-ndjson", ".ndjson");
+
+    private final String mediaType;
+    private final String extension;
+
+    PatientExportFormat(String mediaType, String extension) {
+        this.mediaType = mediaType;
+        this.extension = extension;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public static PatientExportFormat of(String name) {
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BadArgumentsException("Unsupported export format: " + name + " (expected csv or ndjson)");
+        }
+    }
+
+    /** Format of {@code patients.csv}, {@code patients.ndjson.gz} and the like. */
+    public static PatientExportFormat forFileName(String fileName) {
+        String lower = fileName.toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".gz")) {
+            lower = lower.substring(0, lower.length() - 3);
+        }
+        for (PatientExportFormat format : values()) {
+            if (lower.endsWith(format.extension)) {
+                return format;
+            }
+        }
+        if (lower.endsWith(".jsonl")) {
+            return NDJSON;
+        }
+        throw new BadArgumentsException("Cannot tell the export format of " + fileName + " (expected .csv or .ndjson)");
+    }
+}
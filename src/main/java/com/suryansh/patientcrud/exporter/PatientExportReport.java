@@ -0,0 +1,44 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.exporter;
+
+import lombok.Value;
+
+/**
+ * Outcome of one export. {@code bytes} counts the encoded output before compression. {@code peakHeapBytes} is the JVM-wide heap high-water mark while the export ran, so it
+ * includes whatever else the application was doing.
+ */
+@Value
+public class PatientExportReport {
+
+    PatientExportFormat format;
+    boolean gzip;
+    long rows;
+    long bytes;
+    long elapsedMillis;
+    long peakHeapBytes;
+
+    public long getRowsPerSecond() {
+        return elapsedMillis == 0 ? rows * 1000 : rows * 1000 / elapsedMillis;
+    }
+}
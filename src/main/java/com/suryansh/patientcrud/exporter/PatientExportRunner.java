@@ -0,0 +1,51 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.exporter;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Batch export: {@code --patient.export.file=patients.csv.gz} writes the table at startup. The format follows the
+ * extension, and a trailing {@code .gz} compresses. Add {@code --spring.main.web-application-type=none} to exit
+ * when done.
+ */
+@Component
+@ConditionalOnProperty(name = "patient.export.file")
+public class PatientExportRunner implements ApplicationRunner {
+
+    @Autowired PatientExportService patientExportService;
+
+    @Value("${patient.export.file}") String file;
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        patientExportService.export(Paths.get(file), PatientExportFormat.forFileName(file), file.endsWith(".gz"));
+    }
+}
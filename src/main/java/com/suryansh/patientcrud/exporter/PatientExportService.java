@@ -0,0 +1,199 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.exporter;
+
+import com.suryansh.patientcrud.sharding.ShardRouter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Full-table snapshots for analytics. Rows come off a forward-only, read-only JDBC cursor with a large fetch size
+ * and are encoded straight into a reused byte buffer: no entities, no persistence context, no Jackson tree. The
+ * buffer is drained to a channel (the HTTP response or a {@link FileChannel}), optionally through gzip.
+ * <p>
+ * On MySQL the fetch size only streams with {@code useCursorFetch=true} on the JDBC URL; without it the export asks
+ * the driver for row-by-row streaming instead ({@code fetchSize = Integer.MIN_VALUE}), as otherwise Connector/J
+ * would buffer the whole result.
+ * <p>
+ * Exports run in a read-only transaction, so with read replicas configured they are served by a replica. With
+ * sharding the shards are exported one after the other, each in its own transaction: rows are in ID order within a
+ * shard, not across the whole file.
+ */
+@Service
+public class PatientExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(PatientExportService.class);
+
+    private static final String SELECT_ALL =
+        "select patient_id, name, age, address, version from patient_record order by patient_id";
+
+    @Autowired JdbcTemplate jdbcTemplate;
+    @Autowired PlatformTransactionManager transactionManager;
+    @Autowired(required = false) ShardRouter shardRouter;
+
+    @Value("${patient.export.fetch-size:5000}") int fetchSize;
+    @Value("${patient.export.buffer-size:65536}") int bufferSize;
+
+    /**
+     * Writes the table to {@code out}, which is neither flushed nor closed.
+     */
+    public PatientExportReport export(OutputStream out, PatientExportFormat format, boolean gzip) throws IOException {
+        if (gzip) {
+            GZIPOutputStream gzipOut = new GZIPOutputStream(new NonClosingOutputStream(out), bufferSize);
+            PatientExportReport report = export(Channels.newChannel(gzipOut), format, true);
+            gzipOut.finish();
+            return report;
+        }
+        return export(Channels.newChannel(new NonClosingOutputStream(out)), format, false);
+    }
+
+    public PatientExportReport export(Path file, PatientExportFormat format, boolean gzip) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (!gzip) {
+                return export(channel, format, false);
+            }
+            try (GZIPOutputStream gzipOut = new GZIPOutputStream(Channels.newOutputStream(channel), bufferSize)) {
+                return export(Channels.newChannel(gzipOut), format, true);
+            }
+        }
+    }
+
+    private PatientExportReport export(WritableByteChannel channel, PatientExportFormat format, boolean gzip)
+        throws IOException {
+        List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(pool -> pool.getType() == MemoryType.HEAP)
+            .collect(Collectors.toList());
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+        long start = System.nanoTime();
+
+        PatientRowEncoder encoder = new PatientRowEncoder(channel, format, bufferSize);
+        encoder.header();
+        long[] rows = new long[1];
+        try {
+            selectAll(resultSet -> {
+                try {
+                    long patientId = resultSet.getLong(1);
+                    String name = resultSet.getString(2);
+                    int age = resultSet.getInt(3);
+                    boolean ageNull = resultSet.wasNull();
+                    String address = resultSet.getString(4);
+                    long version = resultSet.getLong(5);
+                    boolean versionNull = resultSet.wasNull();
+                    encoder.row(patientId, name, ageNull ? null : age, address, versionNull ? null : version);
+                    rows[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        encoder.flush();
+
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        long peakHeapBytes = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+        PatientExportReport report = new PatientExportReport(format, gzip, rows[0], encoder.bytesWritten(),
+            elapsedMillis, peakHeapBytes);
+        log.info("Exported {} rows as {}{} in {} ms ({} rows/s, {} bytes, peak heap {} MB)", report.getRows(), format,
+            gzip ? "+gzip" : "", elapsedMillis, report.getRowsPerSecond(), report.getBytes(), peakHeapBytes >> 20);
+        return report;
+    }
+
+    private void selectAll(RowCallbackHandler handler) {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        if (shardRouter == null) {
+            readOnly.executeWithoutResult(status -> jdbcTemplate.query(this::prepareSelectAll, handler));
+            return;
+        }
+        for (String shard : shardRouter.shards()) {
+            shardRouter.on(shard, () -> readOnly.execute(status -> {
+                jdbcTemplate.query(this::prepareSelectAll, handler);
+                return null;
+            }));
+        }
+    }
+
+    private PreparedStatement prepareSelectAll(Connection connection) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(SELECT_ALL, ResultSet.TYPE_FORWARD_ONLY,
+            ResultSet.CONCUR_READ_ONLY);
+        statement.setFetchSize(fetchSizeFor(connection));
+        return statement;
+    }
+
+    private int fetchSizeFor(Connection connection) throws SQLException {
+        String url = connection.getMetaData().getURL();
+        if (url != null && url.startsWith("jdbc:mysql:") && !url.contains("useCursorFetch=true")) {
+            return Integer.MIN_VALUE;
+        }
+        return fetchSize;
+    }
+
+    /**
+     * Keeps {@link GZIPOutputStream#finish()} and channel adapters from closing a response stream that belongs to
+     * the servlet container.
+     */
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.exporter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Encodes rows as UTF-8 CSV or NDJSON directly into one reused buffer, which is drained to the channel whenever it
+ * fills up. Numbers are written digit by digit and strings char by char, so encoding a row allocates nothing.
+ */
+final class PatientRowEncoder {
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+    private static final byte[] NULL = "null".getBytes();
+
+    private final ByteBuffer buffer;
+    private final WritableByteChannel channel;
+    private final PatientExportFormat format;
+    private final byte[] digits = new byte[20];
+    private long bytesWritten;
+
+    PatientRowEncoder(WritableByteChannel channel, PatientExportFormat format, int bufferSize) {
+        this.buffer = ByteBuffer.allocate(bufferSize);
+        this.channel = channel;
+        this.format = format;
+    }
+
+    void header() throws IOException {
+        if (format == PatientExportFormat.CSV) {
+            ascii("patientId,name,age,address,version\n");
+        }
+    }
+
+    /** {@code age} and {@code version} are {@code null} when the column is SQL {@code NULL}. */
+    void row(long patientId, String name, Integer age, String address, Long version) throws IOException {
+        if (format == PatientExportFormat.CSV) {
+            number(patientId);
+            put((byte) ',');
+            csvString(name);
+            put((byte) ',');
+            if (age != null) {
+                number(age);
+            }
+            put((byte) ',');
+            csvString(address);
+            put((byte) ',');
+            if (version != null) {
+                number(version);
+            }
+        } else {
+            ascii("{\"patientId\":");
+            number(patientId);
+            ascii(",\"name\":");
+            jsonString(name);
+            ascii(",\"age\":");
+            if (age == null) {
+                put(NULL);
+            } else {
+                number(age);
+            }
+            ascii(",\"address\":");
+            jsonString(address);
+            ascii(",\"version\":");
+            if (version == null) {
+                put(NULL);
+            } else {
+                number(version);
+            }
+            put((byte) '}');
+        }
+        put((byte) '\n');
+    }
+
+    /** Drains what is left in the buffer; the channel itself stays open. */
+    void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            bytesWritten += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    long bytesWritten() {
+        return bytesWritten;
+    }
+
+    private void csvString(String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            utf8(value);
+            return;
+        }
+        put((byte) '"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                put((byte) '"');
+            }
+            i = utf8(value, i);
+        }
+        put((byte) '"');
+    }
+
+    private void jsonString(String value) throws IOException {
+        if (value == null) {
+            put(NULL);
+            return;
+        }
+        put((byte) '"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                put((byte) '\\');
+                put((byte) c);
+            } else if (c < 0x20) {
+                ensure(6);
+                buffer.put((byte) '\\').put((byte) 'u').put((byte) '0').put((byte) '0')
+                    .put(HEX[c >> 4]).put(HEX[c & 0xF]);
+            } else {
+                i = utf8(value, i);
+            }
+        }
+        put((byte) '"');
+    }
+
+    private void utf8(String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            i = utf8(value, i);
+        }
+    }
+
+    /** Writes the code point at {@code i} and returns the index of its last char (surrogate pairs take two). */
+    private int utf8(String value, int i) throws IOException {
+        char c = value.charAt(i);
+        ensure(4);
+        if (c < 0x80) {
+            buffer.put((byte) c);
+        } else if (c < 0x800) {
+            buffer.put((byte) (0xC0 | c >> 6)).put((byte) (0x80 | c & 0x3F));
+        } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+            int codePoint = Character.toCodePoint(c, value.charAt(i + 1));
+            buffer.put((byte) (0xF0 | codePoint >> 18))
+                .put((byte) (0x80 | codePoint >> 12 & 0x3F))
+                .put((byte) (0x80 | codePoint >> 6 & 0x3F))
+                .put((byte) (0x80 | codePoint & 0x3F));
+            return i + 1;
+        } else if (Character.isSurrogate(c)) {
+            buffer.put((byte) '?');
+        } else {
+            buffer.put((byte) (0xE0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3F)).put((byte) (0x80 | c & 0x3F));
+        }
+        return i;
+    }
+
+    private void number(long value) throws IOException {
+        ensure(20);
+        if (value < 0) {
+            if (value == Long.MIN_VALUE) {
+                ascii(Long.toString(value));
+                return;
+            }
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        int start = digits.length;
+        do {
+            digits[--start] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        buffer.put(digits, start, digits.length - start);
+    }
+
+    private void ascii(String value) throws IOException {
+        ensure(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            buffer.put((byte) value.charAt(i));
+        }
+    }
+
+    private void put(byte[] bytes) throws IOException {
+        ensure(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private void put(byte b) throws IOException {
+        ensure(1);
+        buffer.put(b);
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+}
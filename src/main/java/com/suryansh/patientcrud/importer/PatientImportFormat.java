@@ -0,0 +1,67 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.importer;
+
+import com.suryansh.patientcrud.exception.BadArgumentsException;
+import java.util.Locale;
+import org.springframework.http.MediaType;
+
+public enum PatientImportFormat {
+    /** Header row naming the columns ({@code name,age,address}); extra columns are ignored. */
+    CSV("text/csv"),
+    /** One JSON object per line. */
+    NDJSON("application/x-ndjson");
+
+    private final String mediaType;
+
+    PatientImportFormat(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public static PatientImportFormat forContentType(String contentType) {
+        if (contentType != null) {
+            MediaType parsed = MediaType.parseMediaType(contentType);
+            for (PatientImportFormat format : values()) {
+                if (MediaType.parseMediaType(format.mediaType).includes(parsed)) {
+                    return format;
+                }
+            }
+        }
+        throw new BadArgumentsException("Unsupported import content type: " + contentType);
+    }
+
+    public static PatientImportFormat forFileName(String fileName) {
+        String lower = fileName.toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".csv")) {
+            return CSV;
+        }
+        if (lower.endsWith(".ndjson") || lower.endsWith(".jsonl")) {
+            return NDJSON;
+        }
+        throw new BadArgumentsException("Cannot tell the import format of " + fileName + " (expected .csv, .ndjson or .jsonl)");
+    }
+}
@@ -0,0 +1,150 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.importer;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live counters of one import, updated by the reader and the chunk writers; also serves as the final report.
+ * {@code rowsRead} is the number of data rows seen so far: row numbers in the error file count from 1, not
+ * including a CSV header.
+ */
+public class PatientImportProgress {
+
+    public enum Status { RUNNING, COMPLETED, FAILED }
+
+    private final String importId;
+    private final PatientImportFormat format;
+    private final Instant startedAt = Instant.now();
+    private final AtomicLong rowsRead = new AtomicLong();
+    private final AtomicLong rowsImported = new AtomicLong();
+    private final AtomicLong rowsFailed = new AtomicLong();
+    private final AtomicLong chunksCommitted = new AtomicLong();
+    private final AtomicLong chunksFailed = new AtomicLong();
+    private volatile Status status = Status.RUNNING;
+    private volatile Instant finishedAt;
+    private volatile String errorFile;
+    private volatile String failure;
+
+    PatientImportProgress(String importId, PatientImportFormat format) {
+        this.importId = importId;
+        this.format = format;
+    }
+
+    public String getImportId() {
+        return importId;
+    }
+
+    public PatientImportFormat getFormat() {
+        return format;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public long getRowsRead() {
+        return rowsRead.get();
+    }
+
+    public long getRowsImported() {
+        return rowsImported.get();
+    }
+
+    public long getRowsFailed() {
+        return rowsFailed.get();
+    }
+
+    public long getChunksCommitted() {
+        return chunksCommitted.get();
+    }
+
+    public long getChunksFailed() {
+        return chunksFailed.get();
+    }
+
+    /** Rows with errors are written here, with the reason and the original values; {@code null} if there were none. */
+    public String getErrorFile() {
+        return errorFile;
+    }
+
+    /** Why the import stopped early ({@code FAILED}); rows committed before that stay committed. */
+    public String getFailure() {
+        return failure;
+    }
+
+    public long getElapsedMillis() {
+        Instant end = finishedAt != null ? finishedAt : Instant.now();
+        return Duration.between(startedAt, end).toMillis();
+    }
+
+    public long getRowsPerSecond() {
+        long elapsedMillis = getElapsedMillis();
+        return elapsedMillis == 0 ? 0 : rowsImported.get() * 1000 / elapsedMillis;
+    }
+
+    long rowRead() {
+        return rowsRead.incrementAndGet();
+    }
+
+    void imported(int rows) {
+        rowsImported.addAndGet(rows);
+    }
+
+    void failed() {
+        rowsFailed.incrementAndGet();
+    }
+
+    void chunkCommitted() {
+        chunksCommitted.incrementAndGet();
+    }
+
+    void chunkFailed() {
+        chunksFailed.incrementAndGet();
+    }
+
+    void errorFile(String errorFile) {
+        this.errorFile = errorFile;
+    }
+
+    void completed() {
+        finishedAt = Instant.now();
+        status = Status.COMPLETED;
+    }
+
+    void failed(String failure) {
+        this.failure = failure;
+        finishedAt = Instant.now();
+        status = Status.FAILED;
+    }
+}
@@ -0,0 +1,66 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.importer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Command-line import: {@code --patient.import.file=patients.csv} imports the file at startup and writes rejected rows
+ * next to it ({@code patients.csv.errors.csv}). Add {@code --spring.main.web-application-type=none} to exit once the
+ * import is done; a failed import fails startup.
+ */
+@Component
+@ConditionalOnProperty(name = "patient.import.file")
+public class PatientImportRunner implements ApplicationRunner {
+
+    @Autowired PatientImportService patientImportService;
+
+    @Value("${patient.import.file}") String file;
+    @Value("${patient.import.format:}") String format;
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        Path path = Paths.get(file);
+        PatientImportFormat importFormat = format.isEmpty()
+            ? PatientImportFormat.forFileName(path.getFileName().toString())
+            : PatientImportFormat.valueOf(format.toUpperCase());
+        PatientImportProgress report;
+        try (InputStream in = Files.newInputStream(path)) {
+            report = patientImportService.importRecords(in, importFormat, Paths.get(file + ".errors.csv"));
+        }
+        if (report.getStatus() == PatientImportProgress.Status.FAILED) {
+            throw new IllegalStateException("Import of " + file + " failed after " + report.getRowsRead() + " rows: "
+                + report.getFailure());
+        }
+    }
+}
@@ -0,0 +1,442 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.importer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.suryansh.patientcrud.entity.PatientRecord;
+import com.suryansh.patientcrud.exception.PartiallyCommittedException;
+import com.suryansh.patientcrud.service.PatientRecordBatchService;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Imports intake files of any size. The input is parsed as a stream, one row at a time, and every row is checked
+ * against the constraints on {@link PatientRecord}. Valid rows are grouped into chunks of
+ * {@code patient.import.chunk-size} and handed to {@link PatientRecordBatchService#createChunk}: one JDBC-batched
+ * transaction per chunk, with up to {@code patient.import.parallelism} chunks in flight. The reader blocks while
+ * all writers are busy, so memory use depends on chunk size and parallelism, never on file size.
+ * <p>
+ * Chunks commit independently. A chunk that fails is rolled back and then retried one row at a time, so only the
+ * offending rows are lost. Those rows, like rows that fail validation, go to a CSV error file with their row
+ * number, the reason and the original values. After fixing them, the error file can be imported as is.
+ */
+@Service
+public class PatientImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(PatientImportService.class);
+
+    private static final int MAX_FINISHED_IMPORTS = 20;
+
+    private static final CsvSchema ERROR_SCHEMA = CsvSchema.builder()
+        .addColumn("row")
+        .addColumn("error")
+        .addColumn("name")
+        .addColumn("age")
+        .addColumn("address")
+        .setUseHeader(true)
+        .build();
+
+    @Autowired PatientRecordBatchService patientRecordBatchService;
+    @Autowired ObjectMapper objectMapper;
+    @Autowired Validator validator;
+
+    @Value("${patient.import.chunk-size:${patient.batch.chunk-size:500}}") int chunkSize;
+    @Value("${patient.import.parallelism:4}") int parallelism;
+    @Value("${patient.import.progress-interval:100000}") long progressInterval;
+    @Value("${patient.import.error-dir:${java.io.tmpdir}}") String errorDir;
+
+    private final CsvMapper csvMapper = new CsvMapper();
+    private final Map<String, PatientImportProgress> imports = new ConcurrentHashMap<>();
+
+    /**
+     * Imports {@code in} to the end and returns the final report. Rejected rows go to a file in
+     * {@code patient.import.error-dir}.
+     */
+    public PatientImportProgress importRecords(InputStream in, PatientImportFormat format) {
+        String importId = UUID.randomUUID().toString();
+        return importRecords(importId, in, format, Paths.get(errorDir, "patient-import-" + importId + "-errors.csv"));
+    }
+
+    public PatientImportProgress importRecords(InputStream in, PatientImportFormat format, Path errorFile) {
+        return importRecords(UUID.randomUUID().toString(), in, format, errorFile);
+    }
+
+    /**
+     * Running imports and the last few finished ones, oldest first.
+     */
+    public List<PatientImportProgress> imports() {
+        return imports.values().stream()
+            .sorted(Comparator.comparing(PatientImportProgress::getStartedAt))
+            .collect(Collectors.toList());
+    }
+
+    public Optional<PatientImportProgress> find(String importId) {
+        return Optional.ofNullable(imports.get(importId));
+    }
+
+    private PatientImportProgress importRecords(String importId, InputStream in, PatientImportFormat format, Path errorFile) {
+        PatientImportProgress progress = new PatientImportProgress(importId, format);
+        register(progress);
+        log.info("Import {} started ({}, chunks of {}, {} writers)", importId, format, chunkSize, parallelism);
+
+        String failure = null;
+        try (ImportJob job = new ImportJob(progress, errorFile); RowReader rows = open(in, format)) {
+            List<PendingRow> chunk = new ArrayList<>(chunkSize);
+            while (true) {
+                Map<String, String> fields;
+                try {
+                    fields = rows.next();
+                } catch (InvalidRowException e) {
+                    job.reject(progress.rowRead(), Collections.emptyMap(), e.getMessage());
+                    continue;
+                }
+                if (fields == null) {
+                    break;
+                }
+                long row = progress.rowRead();
+                try {
+                    chunk.add(new PendingRow(row, fields, toPatientRecord(fields)));
+                } catch (InvalidRowException e) {
+                    job.reject(row, fields, e.getMessage());
+                }
+                if (chunk.size() == chunkSize) {
+                    job.submit(chunk);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+                if (progressInterval > 0 && row % progressInterval == 0) {
+                    logProgress(progress);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                job.submit(chunk);
+            }
+        } catch (IOException | RuntimeException e) {
+            failure = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+            log.warn("Import {} stopped after {} rows", importId, progress.getRowsRead(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure = "Interrupted";
+        }
+
+        if (failure == null) {
+            progress.completed();
+        } else {
+            progress.failed(failure);
+        }
+        log.info("Import {} {}: {} rows read, {} imported, {} rejected in {} ms ({} rows/s){}", importId,
+            progress.getStatus(), progress.getRowsRead(), progress.getRowsImported(), progress.getRowsFailed(),
+            progress.getElapsedMillis(), progress.getRowsPerSecond(),
+            progress.getErrorFile() == null ? "" : "; rejected rows in " + progress.getErrorFile());
+        return progress;
+    }
+
+    private PatientRecord toPatientRecord(Map<String, String> fields) throws InvalidRowException {
+        String patientId = fields.get("patientId");
+        if (patientId != null && !patientId.trim().isEmpty()) {
+            throw new InvalidRowException("PatientRecord ID must not be set on create!");
+        }
+        String name = fields.get("name");
+        String address = fields.get("address");
+        Integer age = null;
+        String ageText = fields.get("age");
+        if (ageText != null) {
+            try {
+                age = Integer.valueOf(ageText.trim());
+            } catch (NumberFormatException e) {
+                throw new InvalidRowException("age must be an integer: " + ageText);
+            }
+        }
+
+        List<String> violations = new ArrayList<>();
+        addViolations(violations, validator.validateValue(PatientRecord.class, "name", name));
+        addViolations(violations, validator.validateValue(PatientRecord.class, "age", age));
+        addViolations(violations, validator.validateValue(PatientRecord.class, "address", address));
+        if (!violations.isEmpty()) {
+            throw new InvalidRowException(String.join("; ", violations));
+        }
+        return new PatientRecord(null, name, age, address);
+    }
+
+    private static void addViolations(List<String> violations, Set<ConstraintViolation<PatientRecord>> found) {
+        for (ConstraintViolation<PatientRecord> violation : found) {
+            violations.add(violation.getPropertyPath() + " " + violation.getMessage());
+        }
+    }
+
+    private void logProgress(PatientImportProgress progress) {
+        log.info("Import {}: {} rows read, {} imported, {} rejected ({} rows/s)", progress.getImportId(),
+            progress.getRowsRead(), progress.getRowsImported(), progress.getRowsFailed(), progress.getRowsPerSecond());
+    }
+
+    private void register(PatientImportProgress progress) {
+        imports.put(progress.getImportId(), progress);
+        List<PatientImportProgress> finished = imports.values().stream()
+            .filter(p -> p.getStatus() != PatientImportProgress.Status.RUNNING)
+            .sorted(Comparator.comparing(PatientImportProgress::getStartedAt))
+            .collect(Collectors.toList());
+        for (int i = 0; i < finished.size() - MAX_FINISHED_IMPORTS; i++) {
+            imports.remove(finished.get(i).getImportId());
+        }
+    }
+
+    private RowReader open(InputStream in, PatientImportFormat format) throws IOException {
+        if (format == PatientImportFormat.CSV) {
+            MappingIterator<Map<String, String>> iterator = csvMapper.readerForMapOf(String.class)
+                .with(CsvSchema.emptySchema().withHeader())
+                .with(CsvParser.Feature.EMPTY_STRING_AS_NULL)
+                .with(CsvParser.Feature.IGNORE_TRAILING_UNMAPPABLE)
+                .with(CsvParser.Feature.SKIP_EMPTY_LINES)
+                .readValues(in);
+            return new RowReader() {
+                @Override
+                public Map<String, String> next() throws IOException, InvalidRowException {
+                    try {
+                        return iterator.hasNextValue() ? iterator.nextValue() : null;
+                    } catch (JsonProcessingException e) {
+                        // The iterator skips to the next row before reading again.
+                        throw new InvalidRowException("Malformed CSV: " + e.getOriginalMessage());
+                    }
+                }
+
+                @Override
+                public void close() throws IOException {
+                    iterator.close();
+                }
+            };
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        return new RowReader() {
+            @Override
+            public Map<String, String> next() throws IOException, InvalidRowException {
+                String line;
+                do {
+                    line = reader.readLine();
+                    if (line == null) {
+                        return null;
+                    }
+                } while (line.trim().isEmpty());
+                JsonNode node;
+                try {
+                    node = objectMapper.readTree(line);
+                } catch (JsonProcessingException e) {
+                    throw new InvalidRowException("Malformed JSON: " + e.getOriginalMessage());
+                }
+                if (!node.isObject()) {
+                    throw new InvalidRowException("Expected a JSON object");
+                }
+                Map<String, String> fields = new HashMap<>();
+                node.fields().forEachRemaining(field -> {
+                    JsonNode value = field.getValue();
+                    fields.put(field.getKey(), value.isNull() ? null : value.isValueNode() ? value.asText() : value.toString());
+                });
+                return fields;
+            }
+
+            @Override
+            public void close() throws IOException {
+                reader.close();
+            }
+        };
+    }
+
+    /**
+     * Writer pool, back-pressure and error file of one import. Closing it waits for the chunks still in flight.
+     */
+    private final class ImportJob implements Closeable {
+
+        private final PatientImportProgress progress;
+        private final Path errorFile;
+        private final ExecutorService writers;
+        private final Semaphore permits = new Semaphore(parallelism);
+        private SequenceWriter errors;
+
+        ImportJob(PatientImportProgress progress, Path errorFile) {
+            this.progress = progress;
+            this.errorFile = errorFile;
+            this.writers = Executors.newFixedThreadPool(parallelism, new CustomizableThreadFactory("patient-import-"));
+        }
+
+        void submit(List<PendingRow> chunk) throws InterruptedException {
+            permits.acquire();
+            try {
+                writers.execute(() -> {
+                    try {
+                        write(chunk);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        private void write(List<PendingRow> chunk) {
+            List<PatientRecord> records = chunk.stream().map(PendingRow::getRecord).collect(Collectors.toList());
+            List<PendingRow> retry = chunk;
+            try {
+                patientRecordBatchService.createChunk(records);
+                progress.imported(records.size());
+                progress.chunkCommitted();
+                return;
+            } catch (PartiallyCommittedException e) {
+                // Sharded: only the shards that rolled back need the retry.
+                Set<PatientRecord> committed = Collections.newSetFromMap(new IdentityHashMap<>());
+                committed.addAll(e.getCommitted());
+                retry = chunk.stream().filter(pending -> !committed.contains(pending.getRecord())).collect(Collectors.toList());
+                progress.imported(committed.size());
+                progress.chunkFailed();
+                log.warn("Import {}: chunk at row {} partly rolled back ({}); retrying {} rows one by one",
+                    progress.getImportId(), chunk.get(0).getRow(), NestedExceptionUtils.getMostSpecificCause(e).getMessage(),
+                    retry.size());
+            } catch (RuntimeException e) {
+                progress.chunkFailed();
+                log.warn("Import {}: chunk at row {} rolled back ({}); retrying its rows one by one", progress.getImportId(),
+                    chunk.get(0).getRow(), NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+            }
+            for (PendingRow pending : retry) {
+                // The rolled-back insert already assigned an ID; the retry must be a fresh insert.
+                pending.getRecord().setPatientId(null);
+                pending.getRecord().setVersion(null);
+                try {
+                    patientRecordBatchService.createChunk(Collections.singletonList(pending.getRecord()));
+                    progress.imported(1);
+                } catch (RuntimeException e) {
+                    reject(pending.getRow(), pending.getFields(), NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+                }
+            }
+        }
+
+        synchronized void reject(long row, Map<String, String> fields, String reason) {
+            progress.failed();
+            try {
+                if (errors == null) {
+                    errors = csvMapper.writer(ERROR_SCHEMA).writeValues(Files.newBufferedWriter(errorFile));
+                    progress.errorFile(errorFile.toString());
+                }
+                Map<String, String> line = new LinkedHashMap<>();
+                line.put("row", String.valueOf(row));
+                line.put("error", reason);
+                line.put("name", fields.get("name"));
+                line.put("age", fields.get("age"));
+                line.put("address", fields.get("address"));
+                errors.write(line);
+            } catch (IOException e) {
+                log.error("Import {}: could not record rejected row {} in {}", progress.getImportId(), row, errorFile, e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            writers.shutdown();
+            try {
+                writers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                writers.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+            synchronized (this) {
+                if (errors != null) {
+                    errors.close();
+                }
+            }
+        }
+    }
+
+    private interface RowReader extends Closeable {
+        /** The next row's fields by column name, or {@code null} at the end of the input. */
+        Map<String, String> next() throws IOException, InvalidRowException;
+    }
+
+    private static final class PendingRow {
+        private final long row;
+        private final Map<String, String> fields;
+        private final PatientRecord record;
+
+        PendingRow(long row, Map<String, String> fields, PatientRecord record) {
+            this.row = row;
+            this.fields = fields;
+            this.record = record;
+        }
+
+        long getRow() {
+            return row;
+        }
+
+        Map<String, String> getFields() {
+            return fields;
+        }
+
+        PatientRecord getRecord() {
+            return record;
+        }
+    }
+
+    private static final class InvalidRowException extends Exception {
+        InvalidRowException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+package com.suryansh.patientcrud.lookup;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.suryansh.patientcrud.entity.PatientRecord;
+import lombok.Value;
+
+/**
+ * One entry of a multi-get response, in the position of its requested ID. A missing record is reported as
+ * {@code found: false} rather than left out, so the client needn't match IDs up itself.
+ */
+@Value
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PatientLookup {
+    Long patientId;
+    boolean found;
+    PatientRecord record;
+
+    public static PatientLookup of(Long patientId, PatientRecord record) {
+        return new PatientLookup(patientId, record != null, record);
+    }
+}
@@ -0,0 +1,160 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+package com.suryansh.patientcrud.lookup;
+
+import com.suryansh.patientcrud.entity.PatientRecord;
+import com.suryansh.patientcrud.exception.InternalException;
+import com.suryansh.patientcrud.repository.PatientRecordRepository;
+import com.suryansh.patientcrud.routing.RoutingContext;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Loads records by ID in as few round trips as possible.
+ * <p>
+ * {@link #loadAll} splits the IDs into {@code IN} lists of at most {@code patient.lookup.chunk-size}, which keeps
+ * each statement below driver and database limits on bind parameters.
+ * <p>
+ * {@link #load} is the single-ID path behind {@code GET /patient/{id}} cache misses. With
+ * {@code patient.lookup.coalesce.enabled} it works like a DataLoader: the first caller opens a batch and waits up to
+ * {@code coalesce.window}; concurrent callers add their IDs to it, and the first caller then loads the whole batch
+ * with one {@link #loadAll} on its own thread and hands each waiting caller its record. A full batch
+ * ({@code coalesce.max-batch-size} IDs) goes out at once. Callers pinned to the primary by read-your-writes get a
+ * batch of their own, so their reads never go to a replica.
+ */
+@Component
+public class PatientRecordLoader {
+
+    private final PatientRecordRepository patientRecordRepository;
+    private final int chunkSize;
+    private final boolean coalesce;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final Object lock = new Object();
+    /** The batch still taking IDs, by whether it's pinned to the primary. */
+    private final PendingBatch[] open = new PendingBatch[2];
+
+    @Autowired
+    public PatientRecordLoader(PatientRecordRepository patientRecordRepository,
+                               @Value("${patient.lookup.chunk-size:500}") int chunkSize,
+                               @Value("${patient.lookup.coalesce.enabled:false}") boolean coalesce,
+                               @Value("${patient.lookup.coalesce.window:2ms}") Duration window,
+                               @Value("${patient.lookup.coalesce.max-batch-size:200}") int maxBatchSize) {
+        this.patientRecordRepository = patientRecordRepository;
+        this.chunkSize = chunkSize;
+        this.coalesce = coalesce;
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * @return the records found, by ID; IDs without a record are absent
+     */
+    public Map<Long, PatientRecord> loadAll(Collection<Long> patientIds) {
+        List<Long> distinct = new ArrayList<>(new LinkedHashSet<>(patientIds));
+        Map<Long, PatientRecord> found = new HashMap<>(distinct.size() * 2);
+        for (int from = 0; from < distinct.size(); from += chunkSize) {
+            List<Long> chunk = distinct.subList(from, Math.min(from + chunkSize, distinct.size()));
+            patientRecordRepository.findAllById(chunk)
+                .forEach(patientRecord -> found.put(patientRecord.getPatientId(), patientRecord));
+        }
+        return found;
+    }
+
+    public Optional<PatientRecord> load(Long patientId) {
+        if (!coalesce) {
+            return patientRecordRepository.findById(patientId);
+        }
+        int slot = RoutingContext.isPinnedToPrimary() ? 1 : 0;
+        PendingBatch batch;
+        CompletableFuture<PatientRecord> result;
+        boolean leader;
+        synchronized (lock) {
+            batch = open[slot];
+            leader = batch == null;
+            if (leader) {
+                batch = new PendingBatch();
+                open[slot] = batch;
+            }
+            result = batch.add(patientId);
+            if (batch.waiting.size() >= maxBatchSize) {
+                open[slot] = null;
+                batch.full.countDown();
+            }
+        }
+        if (leader) {
+            dispatch(slot, batch);
+        }
+        try {
+            return Optional.ofNullable(result.join());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new InternalException("Lookup of patient " + patientId + " failed: " + e.getCause().getMessage());
+        }
+    }
+
+    private void dispatch(int slot, PendingBatch batch) {
+        try {
+            batch.full.await(windowNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            // Go out with what has been collected so far; the other callers are waiting on it.
+            Thread.currentThread().interrupt();
+        }
+        synchronized (lock) {
+            if (open[slot] == batch) {
+                open[slot] = null;
+            }
+        }
+        try {
+            Map<Long, PatientRecord> found = loadAll(batch.waiting.keySet());
+            batch.waiting.forEach((patientId, result) -> result.complete(found.get(patientId)));
+        } catch (RuntimeException e) {
+            batch.waiting.values().forEach(result -> result.completeExceptionally(e));
+        }
+    }
+
+    private static final class PendingBatch {
+        /** Guarded by the loader's lock until the batch is closed; callers asking for the same ID share a result. */
+        private final Map<Long, CompletableFuture<PatientRecord>> waiting = new LinkedHashMap<>();
+        private final CountDownLatch full = new CountDownLatch(1);
+
+        CompletableFuture<PatientRecord> add(Long patientId) {
+            return waiting.computeIfAbsent(patientId, ignored -> new CompletableFuture<>());
+        }
+    }
+}
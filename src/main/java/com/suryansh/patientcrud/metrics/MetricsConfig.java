@@ -0,0 +1,71 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+package com.suryansh.patientcrud.metrics;
+
+import com.suryansh.patientcrud.cache.PatientRecordCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.JdbcProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Application metrics on top of what Actuator binds by itself (HTTP timers, Hibernate statistics, HikariCP pool).
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public FilterRegistrationBean<QueryCountFilter> queryCountFilter(MeterRegistry meterRegistry,
+                                                                     @Value("${patient.metrics.queries-per-request.warn-threshold:10}") int warnThreshold) {
+        FilterRegistrationBean<QueryCountFilter> registration =
+            new FilterRegistrationBean<>(new QueryCountFilter(meterRegistry, warnThreshold));
+        registration.addUrlPatterns("/patient/*", "/patient");
+        return registration;
+    }
+
+    /**
+     * Takes the place of Boot's {@code JdbcTemplate}, with the same {@code spring.jdbc.template.*} settings, so that its
+     * statements are counted per request too.
+     */
+    @Bean
+    public JdbcTemplate jdbcTemplate(DataSource dataSource, JdbcProperties jdbcProperties) {
+        JdbcTemplate jdbcTemplate = new QueryCountingJdbcTemplate(dataSource);
+        JdbcProperties.Template template = jdbcProperties.getTemplate();
+        jdbcTemplate.setFetchSize(template.getFetchSize());
+        jdbcTemplate.setMaxRows(template.getMaxRows());
+        if (template.getQueryTimeout() != null) {
+            jdbcTemplate.setQueryTimeout((int) template.getQueryTimeout().getSeconds());
+        }
+        return jdbcTemplate;
+    }
+
+    @Bean
+    public MeterBinder patientRecordCacheMetrics(PatientRecordCache patientRecordCache) {
+        return registry -> CaffeineCacheMetrics.monitor(registry, patientRecordCache.nativeCache(), "patientRecords");
+    }
+}
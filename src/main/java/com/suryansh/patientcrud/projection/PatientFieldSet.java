@@ -0,0 +1,82 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.projection;
+
+import com.suryansh.patientcrud.exception.BadArgumentsException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The columns a sparse fieldset request ({@code ?fields=patientId,name}) selects. {@code patientId} is always
+ * included: it identifies the record and is the keyset cursor of list pages.
+ */
+public final class PatientFieldSet {
+
+    public static final String PATIENT_ID = "patientId";
+    public static final List<String> FIELDS = Collections.unmodifiableList(
+        Arrays.asList(PATIENT_ID, "name", "age", "address", "version"));
+
+    private final List<String> columns;
+
+    private PatientFieldSet(List<String> columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * @param fields comma-separated field names of {@link #FIELDS}
+     * @throws BadArgumentsException for an unknown field
+     */
+    public static PatientFieldSet parse(String fields) {
+        List<String> requested = new ArrayList<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (!FIELDS.contains(name)) {
+                throw new BadArgumentsException("Unknown field '" + name + "'; fields must be among " + FIELDS);
+            }
+            requested.add(name);
+        }
+        List<String> columns = new ArrayList<>(FIELDS.size());
+        for (String name : FIELDS) {
+            if (name.equals(PATIENT_ID) || requested.contains(name)) {
+                columns.add(name);
+            }
+        }
+        return new PatientFieldSet(Collections.unmodifiableList(columns));
+    }
+
+    /**
+     * The selected entity attributes, in declaration order.
+     */
+    public List<String> columns() {
+        return columns;
+    }
+
+    public boolean contains(String field) {
+        return columns.contains(field);
+    }
+}
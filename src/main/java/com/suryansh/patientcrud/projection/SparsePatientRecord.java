@@ -0,0 +1,88 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.projection;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.suryansh.patientcrud.entity.PatientRecord;
+import java.util.function.Function;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A {@link PatientRecord} reduced to a {@link PatientFieldSet}: a plain DTO, never managed by the persistence
+ * context. Fields outside the set stay null and are left out of the response.
+ */
+@Data
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SparsePatientRecord {
+
+    private Long patientId;
+    private String name;
+    private Integer age;
+    private String address;
+    private Long version;
+
+    /**
+     * @param valueOf the value of a selected field, by name
+     */
+    public static SparsePatientRecord of(PatientFieldSet fields, Function<String, Object> valueOf) {
+        SparsePatientRecord record = new SparsePatientRecord();
+        for (String field : fields.columns()) {
+            Object value = valueOf.apply(field);
+            switch (field) {
+                case PatientFieldSet.PATIENT_ID:
+                    record.patientId = (Long) value;
+                    break;
+                case "name":
+                    record.name = (String) value;
+                    break;
+                case "age":
+                    record.age = (Integer) value;
+                    break;
+                case "address":
+                    record.address = (String) value;
+                    break;
+                case "version":
+                    record.version = (Long) value;
+                    break;
+                default:
+                    throw new IllegalArgumentException(field);
+            }
+        }
+        return record;
+    }
+
+    /**
+     * Projects an already loaded record, e.g. a cache hit.
+     */
+    public static SparsePatientRecord of(PatientFieldSet fields, PatientRecord patientRecord) {
+        SparsePatientRecord record = new SparsePatientRecord();
+        record.patientId = patientRecord.getPatientId();
+        record.name = fields.contains("name") ? patientRecord.getName() : null;
+        record.age = fields.contains("age") ? patientRecord.getAge() : null;
+        record.address = fields.contains("address") ? patientRecord.getAddress() : null;
+        record.version = fields.contains("version") ? patientRecord.getVersion() : null;
+        return record;
+    }
+}
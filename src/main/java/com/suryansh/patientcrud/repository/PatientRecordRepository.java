@@ -22,9 +22,94 @@
 package com.suryansh.patientcrud.repository;
 
 import com.suryansh.patientcrud.entity.PatientRecord;
-import org.springframework.data.jpa.repository.JpaRepository;
+import java.util.List;
+import java.util.Optional;
+import javax.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.RepositoryDefinition;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+/**
+ * Declares only the CRUD methods the application uses instead of extending {@code JpaRepository}; Spring Data still
+ * implements them. The sharded repository has to route every method by hand, so a method added here without routing
+ * fails its startup check rather than a request.
+ */
 @Repository
-public interface PatientRecordRepository extends JpaRepository<PatientRecord, Long> {
+@RepositoryDefinition(domainClass = PatientRecord.class, idClass = Long.class)
+public interface PatientRecordRepository extends PatientRecordRepositoryCustom {
+
+    <S extends PatientRecord> S save(S patientRecord);
+
+    <S extends PatientRecord> List<S> saveAll(Iterable<S> patientRecords);
+
+    Optional<PatientRecord> findById(Long patientId);
+
+    boolean existsById(Long patientId);
+
+    List<PatientRecord> findAll();
+
+    List<PatientRecord> findAllById(Iterable<Long> patientIds);
+
+    long count();
+
+    /**
+     * Keyset page: the records with an ID strictly greater than {@code patientId}, in ID order.
+     * Only the page's limit is honoured from {@code pageable}; no count query is issued.
+     */
+    List<PatientRecord> findByPatientIdGreaterThanOrderByPatientIdAsc(Long patientId, Pageable pageable);
+
+    /**
+     * Reads the record and locks its row until the surrounding transaction ends, so that the caller sees exactly the
+     * state its own write replaces.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select p from PatientRecord p where p.patientId = :patientId")
+    Optional<PatientRecord> findByIdForUpdate(@Param("patientId") Long patientId);
+
+    /**
+     * Single-statement update that only applies while the row is still at {@code version}.
+     *
+     * @return the number of rows updated: 0 when the record is missing or has moved past {@code version}
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update PatientRecord p set p.name = :name, p.age = :age, p.address = :address, p.version = p.version + 1 "
+        + "where p.patientId = :patientId and p.version = :version")
+    int updateIfVersionMatches(@Param("patientId") Long patientId, @Param("version") Long version,
+                               @Param("name") String name, @Param("age") Integer age, @Param("address") String address);
+
+    /**
+     * Single-statement update without a precondition; still bumps the version so outstanding ETags go stale.
+     *
+     * @return the number of rows updated: 0 when the record is missing
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update PatientRecord p set p.name = :name, p.age = :age, p.address = :address, p.version = p.version + 1 "
+        + "where p.patientId = :patientId")
+    int updateById(@Param("patientId") Long patientId,
+                   @Param("name") String name, @Param("age") Integer age, @Param("address") String address);
+
+    /**
+     * @return the number of rows deleted: 0 when the record is missing or has moved past {@code version}
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from PatientRecord p where p.patientId = :patientId and p.version = :version")
+    int deleteIfVersionMatches(@Param("patientId") Long patientId, @Param("version") Long version);
+
+    /**
+     * Single-statement delete; unlike Spring Data's {@code deleteById} it doesn't load the entity first.
+     *
+     * @return the number of rows deleted: 0 when the record is missing
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from PatientRecord p where p.patientId = :patientId")
+    int deleteRecordById(@Param("patientId") Long patientId);
 }
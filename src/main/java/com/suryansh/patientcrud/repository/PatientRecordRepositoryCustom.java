@@ -0,0 +1,70 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+package com.suryansh.patientcrud.repository;
+
+import com.suryansh.patientcrud.entity.PatientRecord;
+import com.suryansh.patientcrud.projection.PatientFieldSet;
+import com.suryansh.patientcrud.projection.SparsePatientRecord;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * Repository operations that can't be expressed as derived or {@code @Query} methods.
+ */
+public interface PatientRecordRepositoryCustom {
+
+    /**
+     * Walks the whole table in {@code patientId} order through a forward-only cursor, handing each record to
+     * {@code action} and detaching it afterwards so the persistence context never grows with the table.
+     */
+    void forEachOrderedById(Consumer<? super PatientRecord> action);
+
+    /**
+     * Keyset page of the records matching {@code spec}: at most {@code limit} records with an ID strictly greater
+     * than {@code afterId}, in ID order. Unlike {@code findAll(spec, pageable)} no count query is issued.
+     */
+    List<PatientRecord> findPage(Specification<PatientRecord> spec, long afterId, int limit);
+
+    /**
+     * {@link #findPage} selecting only the columns in {@code fields}. Rows come back as DTOs rather than entities, so
+     * nothing enters the persistence context or is dirty-checked.
+     */
+    List<SparsePatientRecord> findFieldsPage(PatientFieldSet fields, Specification<PatientRecord> spec, long afterId, int limit);
+
+    /**
+     * The columns in {@code fields} of one record, as a DTO.
+     */
+    Optional<SparsePatientRecord> findFieldsById(PatientFieldSet fields, Long patientId);
+
+    /**
+     * Number of records per age, from one {@code GROUP BY}.
+     */
+    Map<Integer, Long> countByAge();
+
+    /**
+     * Number of records per distinct address, from one {@code GROUP BY}.
+     */
+    Map<String, Long> countByAddress();
+}
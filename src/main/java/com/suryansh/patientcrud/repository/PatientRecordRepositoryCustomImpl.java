@@ -0,0 +1,147 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+package com.suryansh.patientcrud.repository;
+
+import com.suryansh.patientcrud.entity.PatientRecord;
+import com.suryansh.patientcrud.projection.PatientFieldSet;
+import com.suryansh.patientcrud.projection.SparsePatientRecord;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.transaction.annotation.Transactional;
+
+public class PatientRecordRepositoryCustomImpl implements PatientRecordRepositoryCustom {
+
+    @PersistenceContext EntityManager entityManager;
+
+    // On MySQL a positive fetch size only streams when the JDBC URL has useCursorFetch=true.
+    @Value("${patient.stream.fetch-size:500}") int fetchSize;
+
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachOrderedById(Consumer<? super PatientRecord> action) {
+        try (Stream<PatientRecord> records = entityManager
+            .createQuery("select p from PatientRecord p order by p.patientId", PatientRecord.class)
+            .setHint(QueryHints.HINT_FETCH_SIZE, fetchSize)
+            .setHint(QueryHints.HINT_READONLY, true)
+            .getResultStream()) {
+            records.forEach(record -> {
+                action.accept(record);
+                entityManager.detach(record);
+            });
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<PatientRecord> findPage(Specification<PatientRecord> spec, long afterId, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<PatientRecord> query = cb.createQuery(PatientRecord.class);
+        Root<PatientRecord> root = query.from(PatientRecord.class);
+        Predicate afterCursor = cb.greaterThan(root.get("patientId"), afterId);
+        Predicate filter = spec == null ? null : spec.toPredicate(root, query, cb);
+        query.where(filter == null ? afterCursor : cb.and(afterCursor, filter))
+            .orderBy(cb.asc(root.get("patientId")));
+        return entityManager.createQuery(query)
+            .setMaxResults(limit)
+            .getResultList();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<SparsePatientRecord> findFieldsPage(PatientFieldSet fields, Specification<PatientRecord> spec,
+                                                    long afterId, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<PatientRecord> root = query.from(PatientRecord.class);
+        Predicate afterCursor = cb.greaterThan(root.get("patientId"), afterId);
+        Predicate filter = spec == null ? null : spec.toPredicate(root, query, cb);
+        query.multiselect(select(fields, root))
+            .where(filter == null ? afterCursor : cb.and(afterCursor, filter))
+            .orderBy(cb.asc(root.get("patientId")));
+        return entityManager.createQuery(query)
+            .setMaxResults(limit)
+            .getResultList()
+            .stream()
+            .map(tuple -> SparsePatientRecord.of(fields, tuple::get))
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<SparsePatientRecord> findFieldsById(PatientFieldSet fields, Long patientId) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<PatientRecord> root = query.from(PatientRecord.class);
+        query.multiselect(select(fields, root)).where(cb.equal(root.get("patientId"), patientId));
+        return entityManager.createQuery(query)
+            .getResultList()
+            .stream()
+            .findFirst()
+            .map(tuple -> SparsePatientRecord.of(fields, tuple::get));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Map<Integer, Long> countByAge() {
+        return countBy("age", Integer.class);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Map<String, Long> countByAddress() {
+        return countBy("address", String.class);
+    }
+
+    private <K> Map<K, Long> countBy(String column, Class<K> type) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<PatientRecord> root = query.from(PatientRecord.class);
+        query.multiselect(root.get(column), cb.count(root)).groupBy(root.get(column));
+        Map<K, Long> counts = new HashMap<>();
+        for (Tuple row : entityManager.createQuery(query).getResultList()) {
+            counts.put(row.get(0, type), row.get(1, Long.class));
+        }
+        return counts;
+    }
+
+    private static List<Selection<?>> select(PatientFieldSet fields, Root<PatientRecord> root) {
+        return fields.columns().stream()
+            .<Selection<?>>map(column -> root.get(column).alias(column))
+            .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,72 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+package com.suryansh.patientcrud.repository;
+
+import com.suryansh.patientcrud.entity.PatientRecord;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * Filters for {@code GET /patient/search}. Each factory returns null for a null argument, which
+ * {@link Specification#and} treats as "no restriction".
+ */
+public final class PatientRecordSpecifications {
+
+    private static final char LIKE_ESCAPE = '\\';
+
+    private PatientRecordSpecifications() {
+    }
+
+    /**
+     * Prefix match, so the {@code name} index can serve it as a range scan.
+     */
+    public static Specification<PatientRecord> nameStartsWith(String prefix) {
+        if (prefix == null || prefix.isEmpty()) {
+            return null;
+        }
+        return (root, query, cb) -> cb.like(root.get("name"), escapeLike(prefix) + "%", LIKE_ESCAPE);
+    }
+
+    public static Specification<PatientRecord> addressContains(String text) {
+        if (text == null || text.isEmpty()) {
+            return null;
+        }
+        return (root, query, cb) -> cb.like(root.get("address"), "%" + escapeLike(text) + "%", LIKE_ESCAPE);
+    }
+
+    public static Specification<PatientRecord> ageAtLeast(Integer minAge) {
+        if (minAge == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("age"), minAge);
+    }
+
+    public static Specification<PatientRecord> ageAtMost(Integer maxAge) {
+        if (maxAge == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.lessThanOrEqualTo(root.get("age"), maxAge);
+    }
+
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
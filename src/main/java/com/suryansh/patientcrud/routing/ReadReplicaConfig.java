@@ -0,0 +1,117 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.routing;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Read replicas, enabled by {@code patient.datasource.replica-urls}. The primary pool is built from
+ * {@code spring.datasource.*} as usual; each replica gets a copy of its Hikari settings with its own URL, a short
+ * connection timeout (so a dead replica fails over quickly) and no fail-fast at startup.
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "patient.datasource.replica-urls")
+public class ReadReplicaConfig {
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(
+        DataSourceProperties properties,
+        Environment environment,
+        @Value("${patient.datasource.replica-urls}") List<String> replicaUrls,
+        @Value("${patient.datasource.replica-username:${spring.datasource.username:}}") String username,
+        @Value("${patient.datasource.replica-password:${spring.datasource.password:}}") String password,
+        @Value("${patient.datasource.replica-selection:round-robin}") String selection,
+        @Value("${patient.datasource.replica-connection-timeout:1000}") long connectionTimeoutMillis) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        if (primary.getPoolName() == null) {
+            primary.setPoolName(ReplicaRoutingDataSource.PRIMARY);
+        }
+
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < replicaUrls.size(); i++) {
+            HikariDataSource replica = new HikariDataSource();
+            primary.copyStateTo(replica);
+            replica.setPoolName("replica-" + i);
+            replica.setJdbcUrl(replicaUrls.get(i).trim());
+            replica.setUsername(username);
+            replica.setPassword(password);
+            replica.setConnectionTimeout(connectionTimeoutMillis);
+            replica.setInitializationFailTimeout(-1);
+            replicas.add(replica);
+        }
+
+        return new ReplicaRoutingDataSource(primary, replicas,
+            ReplicaRoutingDataSource.Selection.valueOf(selection.toUpperCase(Locale.ROOT).replace('-', '_')),
+            (int) Math.max(1, Duration.ofMillis(connectionTimeoutMillis).getSeconds()));
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+
+    /**
+     * Actuator instruments the pool it reaches through the {@code DataSource} bean, which outside a transaction is
+     * the primary; the replica pools are bound here.
+     */
+    @Bean
+    public MeterBinder replicaPoolMetrics(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return registry -> {
+            MicrometerMetricsTrackerFactory metricsTrackerFactory = new MicrometerMetricsTrackerFactory(registry);
+            replicaRoutingDataSource.replicaPools().forEach(pool -> pool.setMetricsTrackerFactory(metricsTrackerFactory));
+        };
+    }
+
+    @Bean
+    public FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(
+        @Value("${patient.datasource.read-your-writes-window:2s}") Duration window,
+        @Value("${patient.datasource.client-header:X-Client-Id}") String clientHeader) {
+        FilterRegistrationBean<ReadYourWritesFilter> registration =
+            new FilterRegistrationBean<>(new ReadYourWritesFilter(clientHeader, window));
+        registration.addUrlPatterns("/patient/*", "/patient");
+        registration.setEnabled(!window.isZero());
+        return registration;
+    }
+}
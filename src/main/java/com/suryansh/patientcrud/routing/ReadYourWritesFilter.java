@@ -0,0 +1,84 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.routing;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.io.IOException;
+import java.time.Duration;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Read-your-writes for replica reads: after a write request, the same client's reads stay on the primary for
+ * the length of the window, which should exceed the usual replication lag. Clients are told apart by a header
+ * (default {@code X-Client-Id}), falling back to the remote address.
+ * <p>
+ * The pin is per request thread; reads made on other threads (a {@code StreamingResponseBody}) are not pinned.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    private final String clientHeader;
+    private final Cache<String, Boolean> recentWriters;
+
+    public ReadYourWritesFilter(String clientHeader, Duration window) {
+        this.clientHeader = clientHeader;
+        this.recentWriters = Caffeine.newBuilder()
+            .expireAfterWrite(window)
+            .maximumSize(100_000)
+            .build();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+        String client = request.getHeader(clientHeader);
+        if (client == null || client.isEmpty()) {
+            client = request.getRemoteAddr();
+        }
+        boolean write = isWrite(request.getMethod());
+        if (write) {
+            // Marked before the write runs, since the client may read again as soon as the response reaches it, and
+            // again after it, so the window counts from the commit.
+            recentWriters.put(client, Boolean.TRUE);
+        } else if (recentWriters.getIfPresent(client) != null) {
+            RoutingContext.pinToPrimary();
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            RoutingContext.clear();
+            if (write) {
+                recentWriters.put(client, Boolean.TRUE);
+            }
+        }
+    }
+
+    private static boolean isWrite(String method) {
+        return !HttpMethod.GET.matches(method) && !HttpMethod.HEAD.matches(method) && !HttpMethod.OPTIONS.matches(method);
+    }
+}
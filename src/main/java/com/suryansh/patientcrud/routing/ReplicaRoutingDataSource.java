@@ -0,0 +1,190 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.routing;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Sends read-only transactions to a healthy replica and everything else to the primary. The routing decision needs
+ * the transaction's read-only flag, which is only set after the transaction manager asked for a connection; wrap this
+ * in a {@code LazyConnectionDataSourceProxy} so the physical connection is fetched at the first statement instead.
+ * <p>
+ * A replica that fails to hand out a connection is taken out of rotation and the read falls back to the primary;
+ * the periodic health check puts it back once it answers again. With no healthy replica every read goes to the
+ * primary.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    public static final String PRIMARY = "primary";
+
+    public enum Selection { ROUND_ROBIN, LEAST_CONNECTIONS }
+
+    private final HikariDataSource primary;
+    private final List<Replica> replicas;
+    private final Selection selection;
+    private final int validationTimeoutSeconds;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(HikariDataSource primary, List<HikariDataSource> replicas, Selection selection,
+                                    int validationTimeoutSeconds) {
+        this.primary = primary;
+        this.replicas = replicas.stream().map(Replica::new).collect(Collectors.toList());
+        this.selection = selection;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        Map<Object, Object> targets = new LinkedHashMap<>();
+        targets.put(PRIMARY, primary);
+        this.replicas.forEach(replica -> targets.put(replica.name(), replica.dataSource));
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Replica replica = route();
+        return replica == null ? PRIMARY : replica.name();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Replica replica = route();
+        if (replica != null) {
+            try {
+                return replica.dataSource.getConnection();
+            } catch (SQLException e) {
+                replica.down(e.getMessage());
+            }
+        }
+        return primary.getConnection();
+    }
+
+    /**
+     * Replica name to health, for the actuator and logs.
+     */
+    public Map<String, Boolean> replicaHealth() {
+        Map<String, Boolean> health = new LinkedHashMap<>();
+        replicas.forEach(replica -> health.put(replica.name(), replica.healthy));
+        return health;
+    }
+
+    public List<HikariDataSource> replicaPools() {
+        return replicas.stream().map(replica -> replica.dataSource).collect(Collectors.toList());
+    }
+
+    @Scheduled(fixedDelayString = "${patient.datasource.health-check-interval:5000}")
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection()) {
+                if (connection.isValid(validationTimeoutSeconds)) {
+                    replica.up();
+                } else {
+                    replica.down("connection is not valid");
+                }
+            } catch (SQLException e) {
+                replica.down(e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        replicas.forEach(replica -> replica.dataSource.close());
+        primary.close();
+    }
+
+    private Replica route() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly() || RoutingContext.isPinnedToPrimary()) {
+            return null;
+        }
+        int size = replicas.size();
+        if (size == 0) {
+            return null;
+        }
+        if (selection == Selection.LEAST_CONNECTIONS) {
+            Replica least = null;
+            for (Replica replica : replicas) {
+                if (replica.healthy && (least == null || replica.activeConnections() < least.activeConnections())) {
+                    least = replica;
+                }
+            }
+            return least;
+        }
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.healthy) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    private static final class Replica {
+
+        private final HikariDataSource dataSource;
+        private volatile boolean healthy = true;
+
+        Replica(HikariDataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        String name() {
+            return dataSource.getPoolName();
+        }
+
+        int activeConnections() {
+            HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+            return pool == null ? 0 : pool.getActiveConnections();
+        }
+
+        void up() {
+            if (!healthy) {
+                log.info("Replica {} is back in rotation", name());
+                healthy = true;
+            }
+        }
+
+        void down(String reason) {
+            if (healthy) {
+                log.warn("Replica {} taken out of rotation, reads fall back to other replicas or the primary: {}", name(), reason);
+                healthy = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.routing;
+
+import java.util.function.Supplier;
+
+/**
+ * Per-thread override that keeps reads on the primary, set by {@link ReadYourWritesFilter} for clients that wrote
+ * recently.
+ */
+public final class RoutingContext {
+
+    private static final ThreadLocal<Boolean> PRIMARY_ONLY = new ThreadLocal<>();
+
+    private RoutingContext() {
+    }
+
+    public static void pinToPrimary() {
+        PRIMARY_ONLY.set(Boolean.TRUE);
+    }
+
+    public static boolean isPinnedToPrimary() {
+        return PRIMARY_ONLY.get() != null;
+    }
+
+    public static void clear() {
+        PRIMARY_ONLY.remove();
+    }
+
+    /**
+     * Runs {@code action} pinned to the primary, then restores the thread's previous pin.
+     */
+    public static <T> T onPrimary(Supplier<T> action) {
+        Boolean previous = PRIMARY_ONLY.get();
+        PRIMARY_ONLY.set(Boolean.TRUE);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                PRIMARY_ONLY.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+package com.suryansh.patientcrud.search;
+
+import com.suryansh.patientcrud.entity.PatientRecord;
+import com.suryansh.patientcrud.event.PatientRecordChangedEvent;
+import com.suryansh.patientcrud.repository.PatientRecordRepository;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Optional in-memory inverted index from name and address tokens to patient IDs, for typeahead without a database
+ * round trip. It is loaded from the table once the application is ready and then follows
+ * {@link PatientRecordChangedEvent}s, so it only sees writes made through this instance.
+ */
+@Component
+public class PatientSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(PatientSearchIndex.class);
+
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    @Autowired PatientRecordRepository patientRecordRepository;
+
+    @Value("${patient.search.index.enabled:false}") boolean enabled;
+
+    private final ConcurrentSkipListMap<String, NavigableSet<Long>> postings = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<Long, IndexedRecord> records = new ConcurrentHashMap<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        patientRecordRepository.forEachOrderedById(this::index);
+        log.info("Indexed {} patients ({} tokens) in {} ms", records.size(), postings.size(),
+            System.currentTimeMillis() - start);
+    }
+
+    @EventListener
+    public void onPatientRecordChanged(PatientRecordChangedEvent event) {
+        if (!enabled || event.getPatientId() == null) {
+            return;
+        }
+        if (event.isDeleted()) {
+            records.computeIfPresent(event.getPatientId(), (patientId, previous) -> {
+                unlink(patientId, previous.tokens);
+                return null;
+            });
+        } else {
+            index(event.getRecord());
+        }
+    }
+
+    /**
+     * Patients having, for every token of {@code query}, a name or address token starting with it; lowest IDs
+     * first. The posting sets under the longest query token are merged in ID order and each candidate is checked
+     * against the rest of the query on its own tokens, so the walk stops as soon as {@code limit} patients match.
+     */
+    public List<PatientSuggestion> suggest(String query, int limit) {
+        NavigableSet<String> queryTokens = tokenize(query);
+        if (queryTokens.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String driver = queryTokens.stream().max(Comparator.comparingInt(String::length)).get();
+        PriorityQueue<PostingCursor> cursors = new PriorityQueue<>();
+        for (NavigableSet<Long> ids : postings.subMap(driver, true, driver + Character.MAX_VALUE, false).values()) {
+            Iterator<Long> iterator = ids.iterator();
+            if (iterator.hasNext()) {
+                cursors.add(new PostingCursor(iterator));
+            }
+        }
+        List<PatientSuggestion> suggestions = new ArrayList<>();
+        long previous = Long.MIN_VALUE;
+        while (suggestions.size() < limit && !cursors.isEmpty()) {
+            PostingCursor cursor = cursors.poll();
+            long patientId = cursor.current;
+            if (cursor.advance()) {
+                cursors.add(cursor);
+            }
+            if (patientId <= previous) {
+                continue;
+            }
+            previous = patientId;
+            IndexedRecord indexed = records.get(patientId);
+            if (indexed != null && matchesAll(indexed.tokens, queryTokens)) {
+                suggestions.add(new PatientSuggestion(patientId, indexed.name));
+            }
+        }
+        return suggestions;
+    }
+
+    private static boolean matchesAll(NavigableSet<String> tokens, Set<String> prefixes) {
+        for (String prefix : prefixes) {
+            String token = tokens.ceiling(prefix);
+            if (token == null || !token.startsWith(prefix)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void index(PatientRecord patientRecord) {
+        NavigableSet<String> tokens = tokenize(patientRecord.getName());
+        tokens.addAll(tokenize(patientRecord.getAddress()));
+        IndexedRecord indexed = new IndexedRecord(patientRecord.getName(), tokens);
+        records.compute(patientRecord.getPatientId(), (patientId, previous) -> {
+            if (previous != null) {
+                unlink(patientId, previous.tokens);
+            }
+            for (String token : tokens) {
+                postings.computeIfAbsent(token, t -> new ConcurrentSkipListSet<>()).add(patientId);
+            }
+            return indexed;
+        });
+    }
+
+    /**
+     * Emptied posting sets are left in place: dropping them would race with a concurrent {@link #index} adding to
+     * the same set.
+     */
+    private void unlink(Long patientId, Set<String> tokens) {
+        for (String token : tokens) {
+            NavigableSet<Long> ids = postings.get(token);
+            if (ids != null) {
+                ids.remove(patientId);
+            }
+        }
+    }
+
+    private static NavigableSet<String> tokenize(String text) {
+        NavigableSet<String> tokens = new TreeSet<>();
+        if (text == null) {
+            return tokens;
+        }
+        for (String token : TOKEN_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private static final class IndexedRecord {
+        final String name;
+        final NavigableSet<String> tokens;
+
+        IndexedRecord(String name, NavigableSet<String> tokens) {
+            this.name = name;
+            this.tokens = tokens;
+        }
+    }
+
+    /**
+     * Position in one posting set, ordered by the ID it is on.
+     */
+    private static final class PostingCursor implements Comparable<PostingCursor> {
+        final Iterator<Long> iterator;
+        long current;
+
+        PostingCursor(Iterator<Long> iterator) {
+            this.iterator = iterator;
+            this.current = iterator.next();
+        }
+
+        boolean advance() {
+            if (!iterator.hasNext()) {
+                return false;
+            }
+            current = iterator.next();
+            return true;
+        }
+
+        @Override
+        public int compareTo(PostingCursor other) {
+            return Long.compare(current, other.current);
+        }
+    }
+}
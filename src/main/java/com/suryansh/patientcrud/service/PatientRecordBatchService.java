@@ -0,0 +1,258 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+package com.suryansh.patientcrud.service;
+
+import com.suryansh.patientcrud.changes.PatientChangeLog;
+import com.suryansh.patientcrud.entity.PatientRecord;
+import com.suryansh.patientcrud.event.PatientRecordChangedEvent;
+import com.suryansh.patientcrud.exception.BadArgumentsException;
+import com.suryansh.patientcrud.exception.ConflictException;
+import com.suryansh.patientcrud.exception.InvalidRequestException;
+import com.suryansh.patientcrud.exception.PartiallyCommittedException;
+import com.suryansh.patientcrud.exception.ResourceNotFoundException;
+import com.suryansh.patientcrud.repository.PatientRecordRepository;
+import com.suryansh.patientcrud.sharding.ShardRouter;
+import com.suryansh.patientcrud.stats.PatientStatistics;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PersistenceContext;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Writes large lists of patient records in chunks, one transaction per chunk. Within a chunk Hibernate groups the
+ * statements into JDBC batches ({@code hibernate.jdbc.batch_size}); the persistence context is cleared after every
+ * chunk so memory doesn't grow with the request.
+ * <p>
+ * A failing chunk is rolled back on its own: chunks committed before it stay committed.
+ */
+@Service
+public class PatientRecordBatchService {
+
+    @Autowired PatientRecordRepository patientRecordRepository;
+    @Autowired ApplicationEventPublisher eventPublisher;
+    @Autowired PatientChangeLog patientChangeLog;
+    @Autowired PatientStatistics patientStatistics;
+    @Autowired Validator validator;
+    @Autowired(required = false) ShardRouter shardRouter;
+
+    @PersistenceContext EntityManager entityManager;
+
+    @Value("${patient.batch.chunk-size:500}") int chunkSize;
+    @Value("${patient.batch.max-records:10000}") int maxRecords;
+
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public PatientRecordBatchService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public List<PatientRecord> createAll(List<PatientRecord> patientRecords) {
+        checkSize(patientRecords);
+        for (int index = 0; index < patientRecords.size(); index++) {
+            PatientRecord patientRecord = patientRecords.get(index);
+            if (patientRecord == null) {
+                throw new InvalidRequestException("PatientRecord must not be null!");
+            }
+            if (patientRecord.getPatientId() != null) {
+                throw new InvalidRequestException("PatientRecord ID must not be set on create!");
+            }
+            checkValid(index, patientRecord);
+        }
+        List<PatientRecord> created = new ArrayList<>(patientRecords.size());
+        for (List<PatientRecord> chunk : chunks(patientRecords)) {
+            created.addAll(createChunk(chunk));
+        }
+        return created;
+    }
+
+    public List<PatientRecord> updateAll(List<PatientRecord> patientRecords) {
+        checkSize(patientRecords);
+        for (int index = 0; index < patientRecords.size(); index++) {
+            PatientRecord patientRecord = patientRecords.get(index);
+            if (patientRecord == null || patientRecord.getPatientId() == null) {
+                throw new InvalidRequestException("PatientRecord or ID must not be null!");
+            }
+            checkValid(index, patientRecord);
+        }
+        List<PatientRecord> updated = new ArrayList<>(patientRecords.size());
+        for (List<PatientRecord> chunk : chunks(patientRecords)) {
+            updated.addAll(updateChunk(chunk));
+        }
+        return updated;
+    }
+
+    /**
+     * Inserts one chunk in its own transaction. IDs come from the pooled allocator, so the inserts are batched.
+     * <p>
+     * With sharding the chunk is split by shard, one transaction each; if only some of them commit this throws
+     * {@link PartiallyCommittedException} naming the records that didn't.
+     */
+    public List<PatientRecord> createChunk(List<PatientRecord> chunk) {
+        if (shardRouter == null) {
+            return createOnCurrentShard(chunk);
+        }
+        Map<String, List<PatientRecord>> byShard = new LinkedHashMap<>();
+        for (PatientRecord patientRecord : chunk) {
+            // These are inserts: like the sequence, replace whatever ID the record came with.
+            patientRecord.setPatientId(shardRouter.nextId());
+            byShard.computeIfAbsent(shardRouter.owner(patientRecord.getPatientId()), shard -> new ArrayList<>()).add(patientRecord);
+        }
+        List<PatientRecord> created = new ArrayList<>(chunk.size());
+        List<PatientRecord> failed = new ArrayList<>();
+        RuntimeException failure = null;
+        for (Map.Entry<String, List<PatientRecord>> group : byShard.entrySet()) {
+            try {
+                created.addAll(shardRouter.on(group.getKey(), () -> createOnCurrentShard(group.getValue())));
+            } catch (RuntimeException e) {
+                failed.addAll(group.getValue());
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure == null) {
+            return created;
+        }
+        throw created.isEmpty() ? failure : new PartiallyCommittedException(created, failed, failure);
+    }
+
+    private List<PatientRecord> createOnCurrentShard(List<PatientRecord> chunk) {
+        List<PatientRecord> created = transactionTemplate.execute(status -> {
+            List<PatientRecord> saved = patientRecordRepository.saveAll(chunk);
+            entityManager.flush();
+            entityManager.clear();
+            patientChangeLog.saved(saved);
+            saved.forEach(patientRecord -> patientStatistics.record(null, patientRecord));
+            return saved;
+        });
+        created.forEach(patientRecord -> eventPublisher.publishEvent(PatientRecordChangedEvent.saved(patientRecord)));
+        return created;
+    }
+
+    /**
+     * Updates one chunk in its own transaction: a single {@code IN} query loads the chunk, the changed entities
+     * are flushed as one batch of versioned {@code UPDATE}s. A record that carries a {@code version} must still be at
+     * that version, or the chunk fails with a conflict.
+     * <p>
+     * With sharding the chunk is split by the shard holding each record and the groups are updated one after the
+     * other, one transaction each: groups before a failing one stay committed, like earlier chunks do.
+     */
+    public List<PatientRecord> updateChunk(List<PatientRecord> chunk) {
+        if (shardRouter == null) {
+            return updateOnCurrentShard(chunk);
+        }
+        Map<String, List<PatientRecord>> byShard = new LinkedHashMap<>();
+        for (PatientRecord patientRecord : chunk) {
+            byShard.computeIfAbsent(shardRouter.locate(patientRecord.getPatientId()), shard -> new ArrayList<>()).add(patientRecord);
+        }
+        List<PatientRecord> updated = new ArrayList<>(chunk.size());
+        byShard.forEach((shard, group) -> updated.addAll(shardRouter.on(shard, () -> updateOnCurrentShard(group))));
+        return updated;
+    }
+
+    private List<PatientRecord> updateOnCurrentShard(List<PatientRecord> chunk) {
+        List<PatientRecord> updated;
+        try {
+            updated = transactionTemplate.execute(status -> {
+                Map<Long, PatientRecord> existing = patientRecordRepository
+                    .findAllById(chunk.stream().map(PatientRecord::getPatientId).collect(Collectors.toList()))
+                    .stream()
+                    .collect(Collectors.toMap(PatientRecord::getPatientId, Function.identity()));
+                List<PatientRecord> changed = new ArrayList<>(chunk.size());
+                for (PatientRecord patientRecord : chunk) {
+                    PatientRecord existingPatientRecord = existing.get(patientRecord.getPatientId());
+                    if (existingPatientRecord == null) {
+                        throw new ResourceNotFoundException("Patient with ID " + patientRecord.getPatientId() + " does not exist.");
+                    }
+                    if (patientRecord.getVersion() != null && !patientRecord.getVersion().equals(existingPatientRecord.getVersion())) {
+                        throw new ConflictException("Patient with ID " + patientRecord.getPatientId()
+                            + " is no longer at version " + patientRecord.getVersion() + ".");
+                    }
+                    patientStatistics.record(new PatientRecord(existingPatientRecord.getPatientId(),
+                        existingPatientRecord.getName(), existingPatientRecord.getAge(),
+                        existingPatientRecord.getAddress()), patientRecord);
+                    existingPatientRecord.setName(patientRecord.getName());
+                    existingPatientRecord.setAge(patientRecord.getAge());
+                    existingPatientRecord.setAddress(patientRecord.getAddress());
+                    changed.add(existingPatientRecord);
+                }
+                entityManager.flush();
+                entityManager.clear();
+                patientChangeLog.saved(changed);
+                return changed;
+            });
+        } catch (OptimisticLockException | OptimisticLockingFailureException e) {
+            throw new ConflictException("A patient in the batch was modified concurrently; chunk rolled back.");
+        }
+        updated.forEach(patientRecord -> eventPublisher.publishEvent(PatientRecordChangedEvent.saved(patientRecord)));
+        return updated;
+    }
+
+    /**
+     * Runs for every record before the first chunk is written, so that an invalid one fails the whole request as a 400
+     * instead of a later chunk as a 500.
+     */
+    private void checkValid(int index, PatientRecord patientRecord) {
+        Set<ConstraintViolation<PatientRecord>> violations = validator.validate(patientRecord);
+        if (!violations.isEmpty()) {
+            throw new InvalidRequestException("PatientRecord at index " + index + " is invalid: " + violations.stream()
+                .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", ")));
+        }
+    }
+
+    private void checkSize(List<PatientRecord> patientRecords) {
+        if (patientRecords == null || patientRecords.isEmpty()) {
+            throw new InvalidRequestException("PatientRecord list must not be empty!");
+        }
+        if (patientRecords.size() > maxRecords) {
+            throw new BadArgumentsException("At most " + maxRecords + " records are accepted per batch.");
+        }
+    }
+
+    private List<List<PatientRecord>> chunks(List<PatientRecord> patientRecords) {
+        List<List<PatientRecord>> chunks = new ArrayList<>();
+        for (int from = 0; from < patientRecords.size(); from += chunkSize) {
+            chunks.add(patientRecords.subList(from, Math.min(from + chunkSize, patientRecords.size())));
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,269 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.service;
+
+import com.suryansh.patientcrud.entity.PatientRecord;
+import com.suryansh.patientcrud.exception.InternalException;
+import com.suryansh.patientcrud.exception.PartiallyCommittedException;
+import com.suryansh.patientcrud.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Service;
+
+/**
+ * Group commit for single creates, enabled by {@code patient.create.group-commit.enabled}. Callers put their record
+ * on a bounded queue and wait. A flusher thread collects records until it has {@code max-batch-size} of them or the
+ * oldest has waited {@code max-delay}. It then inserts the whole group through
+ * {@link PatientRecordBatchService#createChunk}: one transaction, one commit (and one fsync) for the group. Each
+ * caller is acknowledged only after that commit, with its own generated ID.
+ * <p>
+ * If the group fails, it is retried one record at a time, so only the records at fault fail. A full queue is
+ * rejected right away with a 503 rather than queueing without bound.
+ */
+@Service
+public class PatientRecordGroupCommitter {
+
+    private static final Logger log = LoggerFactory.getLogger(PatientRecordGroupCommitter.class);
+
+    private final PatientRecordBatchService patientRecordBatchService;
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final int flusherCount;
+    private final Duration acknowledgeTimeout;
+    private final BlockingQueue<PendingCreate> queue;
+    private final List<Thread> flushers = new ArrayList<>();
+    private final DistributionSummary batchSizes;
+    private final Counter rejections;
+    private volatile boolean running;
+
+    @Autowired
+    public PatientRecordGroupCommitter(PatientRecordBatchService patientRecordBatchService,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${patient.create.group-commit.enabled:false}") boolean enabled,
+                                       @Value("${patient.create.group-commit.queue-capacity:10000}") int queueCapacity,
+                                       @Value("${patient.create.group-commit.max-batch-size:500}") int maxBatchSize,
+                                       @Value("${patient.create.group-commit.max-delay:5ms}") Duration maxDelay,
+                                       @Value("${patient.create.group-commit.flushers:1}") int flusherCount,
+                                       @Value("${patient.create.group-commit.acknowledge-timeout:30s}") Duration acknowledgeTimeout) {
+        this.patientRecordBatchService = patientRecordBatchService;
+        this.enabled = enabled;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.flusherCount = flusherCount;
+        this.acknowledgeTimeout = acknowledgeTimeout;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        Gauge.builder("patient.create.group_commit.queue", queue, BlockingQueue::size)
+            .description("Creates waiting for a group commit")
+            .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("patient.create.group_commit.batch_size")
+            .description("Records per group commit")
+            .register(meterRegistry);
+        this.rejections = Counter.builder("patient.create.group_commit.rejected")
+            .description("Creates turned away because the queue was full")
+            .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < flusherCount; i++) {
+            Thread flusher = new Thread(this::flushLoop, "patient-group-commit-" + i);
+            flusher.setDaemon(true);
+            flusher.start();
+            flushers.add(flusher);
+        }
+        log.info("Group commit for creates: batches of up to {}, max delay {} µs, {} flusher(s)", maxBatchSize,
+            maxDelayNanos / 1000, flusherCount);
+    }
+
+    /**
+     * Stops taking creates and lets the flushers commit what is already queued.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        for (Thread flusher : flushers) {
+            flusher.join(acknowledgeTimeout.toMillis());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues the record and blocks until its group has committed. Returns the record with its ID and version set.
+     */
+    public PatientRecord create(PatientRecord patientRecord) {
+        PendingCreate pending = new PendingCreate(patientRecord);
+        if (!running || !queue.offer(pending)) {
+            rejections.increment();
+            throw new ServiceUnavailableException("Too many pending creates, retry later.");
+        }
+        try {
+            return pending.result.get(acknowledgeTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new InternalException("Create failed: " + e.getCause().getMessage());
+        } catch (TimeoutException e) {
+            throw new ServiceUnavailableException("Create was not committed within " + acknowledgeTimeout
+                + "; it may still be written.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Interrupted while waiting for the create to commit.");
+        }
+    }
+
+    private void flushLoop() {
+        List<PendingCreate> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                collect(batch);
+            } catch (InterruptedException e) {
+                // Only stop() ends the loop, and only once the queue is drained; what was collected goes out now.
+                Thread.interrupted();
+            }
+            if (batch.isEmpty()) {
+                continue;
+            }
+            try {
+                commit(batch);
+            } catch (RuntimeException e) {
+                log.error("Group commit flusher failed on a batch of {}", batch.size(), e);
+                batch.forEach(pending -> pending.result.completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Adds the next batch to {@code batch}: waits briefly for a first create, then takes more until the batch is full
+     * or {@code max-delay} has passed.
+     */
+    private void collect(List<PendingCreate> batch) throws InterruptedException {
+        PendingCreate first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + maxDelayNanos;
+        while (batch.size() < maxBatchSize) {
+            if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            PendingCreate next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void commit(List<PendingCreate> batch) {
+        batchSizes.record(batch.size());
+        List<PendingCreate> retry = batch;
+        try {
+            patientRecordBatchService.createChunk(batch.stream().map(PendingCreate::getRecord).collect(Collectors.toList()));
+            batch.forEach(pending -> pending.result.complete(pending.record));
+            return;
+        } catch (PartiallyCommittedException e) {
+            retry = complete(batch, e.getCommitted());
+            log.warn("Group commit of {} creates rolled back on some shards ({}); retrying {} of them one by one",
+                batch.size(), NestedExceptionUtils.getMostSpecificCause(e).getMessage(), retry.size());
+        } catch (RuntimeException e) {
+            log.warn("Group commit of {} creates rolled back ({}); retrying them one by one", batch.size(),
+                NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+        }
+        for (PendingCreate pending : retry) {
+            // The rolled-back insert already assigned an ID; the retry must be a fresh insert.
+            pending.record.setPatientId(null);
+            pending.record.setVersion(null);
+            try {
+                patientRecordBatchService.createChunk(Collections.singletonList(pending.record));
+                pending.result.complete(pending.record);
+            } catch (RuntimeException e) {
+                pending.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Completes the creates that were committed and returns the rest.
+     */
+    private static List<PendingCreate> complete(List<PendingCreate> batch, List<PatientRecord> committed) {
+        Set<PatientRecord> done = Collections.newSetFromMap(new IdentityHashMap<>());
+        done.addAll(committed);
+        List<PendingCreate> rest = new ArrayList<>();
+        for (PendingCreate pending : batch) {
+            if (done.contains(pending.record)) {
+                pending.result.complete(pending.record);
+            } else {
+                rest.add(pending);
+            }
+        }
+        return rest;
+    }
+
+    private static final class PendingCreate {
+        private final PatientRecord record;
+        private final CompletableFuture<PatientRecord> result = new CompletableFuture<>();
+
+        PendingCreate(PatientRecord record) {
+            this.record = record;
+        }
+
+        PatientRecord getRecord() {
+            return record;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.service;
+
+import com.suryansh.patientcrud.changes.PatientChangeLog;
+import com.suryansh.patientcrud.entity.PatientRecord;
+import com.suryansh.patientcrud.repository.PatientRecordRepository;
+import com.suryansh.patientcrud.sharding.ShardRouter;
+import com.suryansh.patientcrud.stats.PatientStatistics;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Single-record writes of {@code PatientRecordController}, each committed together with its row in the change feed's
+ * outbox; see {@link PatientChangeLog}. With sharding the transaction is opened on the shard holding the record, so
+ * the record and its change land in the same database. Each write is also counted in {@link PatientStatistics}.
+ */
+@Service
+public class PatientRecordWriteService {
+
+    @Autowired PatientRecordRepository patientRecordRepository;
+    @Autowired PatientChangeLog patientChangeLog;
+    @Autowired PatientStatistics patientStatistics;
+    @Autowired(required = false) ShardRouter shardRouter;
+
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public PatientRecordWriteService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public PatientRecord create(PatientRecord patientRecord) {
+        if (shardRouter == null) {
+            return createOnCurrentShard(patientRecord);
+        }
+        // Like the sequence without sharding, a new record gets a fresh ID whatever it carried.
+        String shard;
+        if (patientRecord.getVersion() == null || patientRecord.getPatientId() == null) {
+            patientRecord.setPatientId(shardRouter.nextId());
+            shard = shardRouter.owner(patientRecord.getPatientId());
+        } else {
+            shard = shardRouter.locate(patientRecord.getPatientId());
+        }
+        return shardRouter.on(shard, () -> createOnCurrentShard(patientRecord));
+    }
+
+    private PatientRecord createOnCurrentShard(PatientRecord patientRecord) {
+        return transactionTemplate.execute(status -> {
+            PatientRecord savedRecord = patientRecordRepository.save(patientRecord);
+            patientChangeLog.saved(savedRecord);
+            patientStatistics.record(null, savedRecord);
+            return savedRecord;
+        });
+    }
+
+    /**
+     * Overwrites name, age and address, only while the record is at {@code expectedVersion} unless that is null.
+     * Returns the number of records updated: 0 when it is missing or at another version.
+     */
+    public int update(Long patientId, Long expectedVersion, String name, Integer age, String address) {
+        return onHolder(patientId, () -> transactionTemplate.execute(status -> {
+            PatientRecord previous = previousState(patientId);
+            int updated = expectedVersion == null
+                ? patientRecordRepository.updateById(patientId, name, age, address)
+                : patientRecordRepository.updateIfVersionMatches(patientId, expectedVersion, name, age, address);
+            if (updated > 0) {
+                PatientRecord current = new PatientRecord(patientId, name, age, address,
+                    expectedVersion == null ? null : expectedVersion + 1);
+                patientChangeLog.saved(current);
+                if (previous != null) {
+                    patientStatistics.record(previous, current);
+                }
+            }
+            return updated;
+        }));
+    }
+
+    /**
+     * Deletes the record, only while it is at {@code expectedVersion} unless that is null. Returns the number of
+     * records deleted.
+     */
+    public int delete(Long patientId, Long expectedVersion) {
+        Supplier<Integer> delete = () -> transactionTemplate.execute(status -> {
+            PatientRecord previous = previousState(patientId);
+            int deleted = expectedVersion == null
+                ? patientRecordRepository.deleteRecordById(patientId)
+                : patientRecordRepository.deleteIfVersionMatches(patientId, expectedVersion);
+            if (deleted > 0) {
+                patientChangeLog.deleted(patientId);
+                patientStatistics.record(previous, null);
+            }
+            return deleted;
+        });
+        if (shardRouter == null || expectedVersion != null) {
+            return onHolder(patientId, delete);
+        }
+        // During a rebalance the record can briefly exist on both shards; both copies have to go.
+        int deleted = shardRouter.on(shardRouter.owner(patientId), delete);
+        String previous = shardRouter.previousOwner(patientId);
+        if (previous != null) {
+            deleted += shardRouter.on(previous, delete);
+        }
+        return Math.min(deleted, 1);
+    }
+
+    /**
+     * The record as it is before this transaction's write, locked until the transaction ends; only read while
+     * statistics need it.
+     */
+    private PatientRecord previousState(Long patientId) {
+        if (!patientStatistics.isEnabled()) {
+            return null;
+        }
+        return patientRecordRepository.findByIdForUpdate(patientId).orElse(null);
+    }
+
+    /**
+     * Runs {@code write} where the record lives: on its owner and, while a rebalance hasn't moved it there yet, on its
+     * previous owner when the owner wrote nothing.
+     */
+    private int onHolder(Long patientId, Supplier<Integer> write) {
+        if (shardRouter == null) {
+            return write.get();
+        }
+        int written = shardRouter.on(shardRouter.owner(patientId), write);
+        String previous = shardRouter.previousOwner(patientId);
+        if (written > 0 || previous == null) {
+            return written;
+        }
+        return shardRouter.on(previous, write);
+    }
+}
@@ -0,0 +1,46 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.sharding;
+
+import java.io.Serializable;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+/**
+ * The sequence generator, except on a shard: there the ID has to be known before the insert to pick the shard, so
+ * the sharding layer assigns a Snowflake ID up front and it is kept. Outside a shard context an ID on a new entity is
+ * replaced, as the plain sequence generator does.
+ */
+public class PatientIdGenerator extends SequenceStyleGenerator {
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) {
+        if (ShardContext.current() != null) {
+            Serializable assigned = session.getEntityPersister(null, object).getIdentifier(object, session);
+            if (assigned != null) {
+                return assigned;
+            }
+        }
+        return super.generate(session, object);
+    }
+}
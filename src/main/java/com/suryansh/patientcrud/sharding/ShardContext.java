@@ -0,0 +1,59 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.sharding;
+
+import java.util.function.Supplier;
+
+/**
+ * The shard the current thread talks to. {@link ShardRoutingDataSource} reads it when a connection is fetched, so it
+ * has to be set before a transaction's first statement and must not change until the transaction ends.
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    public static String current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Runs {@code work} on {@code shard}. Nesting is allowed only for the same shard: a transaction can't span shards.
+     */
+    public static <T> T on(String shard, Supplier<T> work) {
+        String previous = CURRENT.get();
+        if (previous != null && !previous.equals(shard)) {
+            throw new IllegalStateException("Already on shard " + previous + ", cannot switch to " + shard);
+        }
+        CURRENT.set(shard);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.sharding;
+
+import lombok.Value;
+
+/**
+ * Outcome of one {@link ShardRebalancer} pass. {@code dropped} counts records deleted by clients while they were being
+ * moved.
+ */
+@Value
+public class ShardRebalanceReport {
+
+    long scanned;
+    long moved;
+    long dropped;
+    long elapsedMillis;
+}
@@ -0,0 +1,149 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.sharding;
+
+import com.suryansh.patientcrud.entity.PatientRecord;
+import com.suryansh.patientcrud.exception.ConflictException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+/**
+ * Moves every record to the shard that owns it under the current ring, while the application keeps serving traffic.
+ * Each shard is scanned in keyset pages; a misplaced record is copied to its owner and then deleted from the source
+ * only if its version is unchanged. A client update in between (applied to whichever copy the router found) makes the
+ * delete miss, and the record is copied again at its new version; a client delete removes both copies, and the copy
+ * is dropped.
+ * <p>
+ * To add shards: append their URLs, set {@code patient.sharding.previous-ring-size} to the old shard count and
+ * restart, so that reads fall back to the previous owner; run the rebalance; then remove the property again.
+ */
+public class ShardRebalancer {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardRebalancer.class);
+
+    private static final String SELECT_PAGE = "select patient_id, name, age, address, version from patient_record "
+        + "where patient_id > ? order by patient_id limit ?";
+    private static final String SELECT_ONE =
+        "select patient_id, name, age, address, version from patient_record where patient_id = ?";
+    private static final RowMapper<PatientRecord> ROW_MAPPER = (resultSet, rowNum) -> new PatientRecord(
+        resultSet.getLong(1), resultSet.getString(2), resultSet.getInt(3), resultSet.getString(4), resultSet.getLong(5));
+
+    private final ShardRouter router;
+    private final JdbcTemplate jdbcTemplate;
+    private final int pageSize;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public ShardRebalancer(ShardRouter router, JdbcTemplate jdbcTemplate, int pageSize) {
+        this.router = router;
+        this.jdbcTemplate = jdbcTemplate;
+        this.pageSize = pageSize;
+    }
+
+    public ShardRebalanceReport rebalance() {
+        if (!running.compareAndSet(false, true)) {
+            throw new ConflictException("A shard rebalance is already running.");
+        }
+        try {
+            long start = System.nanoTime();
+            long scanned = 0;
+            long moved = 0;
+            long dropped = 0;
+            for (String source : router.shards()) {
+                long afterId = 0;
+                List<PatientRecord> page;
+                do {
+                    long cursor = afterId;
+                    page = router.on(source, () -> jdbcTemplate.query(SELECT_PAGE, ROW_MAPPER, cursor, pageSize));
+                    for (PatientRecord record : page) {
+                        scanned++;
+                        String owner = router.owner(record.getPatientId());
+                        if (owner.equals(source)) {
+                            continue;
+                        }
+                        if (move(record, source, owner)) {
+                            moved++;
+                        } else {
+                            dropped++;
+                        }
+                    }
+                    if (!page.isEmpty()) {
+                        afterId = page.get(page.size() - 1).getPatientId();
+                    }
+                } while (page.size() == pageSize);
+                log.info("Rebalanced {}: {} records scanned, {} moved so far", source, scanned, moved);
+            }
+            ShardRebalanceReport report = new ShardRebalanceReport(scanned, moved, dropped,
+                (System.nanoTime() - start) / 1_000_000);
+            log.info("Shard rebalance finished: {} records scanned, {} moved, {} dropped in {} ms", report.getScanned(),
+                report.getMoved(), report.getDropped(), report.getElapsedMillis());
+            return report;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * @return false if the record was deleted on the source while it was being moved
+     */
+    private boolean move(PatientRecord record, String source, String target) {
+        long patientId = record.getPatientId();
+        PatientRecord current = record;
+        while (true) {
+            PatientRecord copied = current;
+            copy(copied, target);
+            int deleted = router.on(source, () -> jdbcTemplate.update(
+                "delete from patient_record where patient_id = ? and version = ?", patientId, copied.getVersion()));
+            if (deleted == 1) {
+                return true;
+            }
+            List<PatientRecord> reread = router.on(source, () -> jdbcTemplate.query(SELECT_ONE, ROW_MAPPER, patientId));
+            if (reread.isEmpty()) {
+                router.on(target, () -> jdbcTemplate.update(
+                    "delete from patient_record where patient_id = ? and version = ?", patientId, copied.getVersion()));
+                return false;
+            }
+            current = reread.get(0);
+        }
+    }
+
+    /**
+     * Upserts {@code record} on {@code target} unless the copy there is already at its version or newer.
+     */
+    private void copy(PatientRecord record, String target) {
+        router.on(target, () -> {
+            int updated = jdbcTemplate.update(
+                "update patient_record set name = ?, age = ?, address = ?, version = ? where patient_id = ? and version < ?",
+                record.getName(), record.getAge(), record.getAddress(), record.getVersion(), record.getPatientId(),
+                record.getVersion());
+            if (updated == 0 && jdbcTemplate.query(SELECT_ONE, ROW_MAPPER, record.getPatientId()).isEmpty()) {
+                jdbcTemplate.update("insert into patient_record (patient_id, name, age, address, version) values (?, ?, ?, ?, ?)",
+                    record.getPatientId(), record.getName(), record.getAge(), record.getAddress(), record.getVersion());
+            }
+            return null;
+        });
+    }
+}
@@ -0,0 +1,173 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.sharding;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Where patient records live. Shards are named {@code shard-0 .. shard-n-1} after their position in
+ * {@code patient.sharding.shard-urls}, and the ring is built from those names, so new shards must be appended to the
+ * list, never inserted or reordered.
+ * <p>
+ * While {@code patient.sharding.previous-ring-size} is set the table is being rebalanced onto the appended shards: a
+ * record may still sit on its owner under the previous, smaller ring until {@link ShardRebalancer} moves it, so
+ * single-record operations fall back to that shard when the current owner doesn't have the record.
+ */
+public class ShardRouter implements AutoCloseable {
+
+    private final List<String> shards;
+    private final ConsistentHashRing ring;
+    private final ConsistentHashRing previousRing;
+    private final SnowflakeIdGenerator idGenerator;
+    private final JdbcTemplate jdbcTemplate;
+    private final ExecutorService scatter = Executors.newThreadPerTaskExecutor(
+        Thread.ofVirtual().name("patient-shard-", 0).factory());
+
+    public ShardRouter(List<String> shards, int previousRingSize, int virtualNodes, SnowflakeIdGenerator idGenerator,
+                       JdbcTemplate jdbcTemplate) {
+        if (previousRingSize < 0 || previousRingSize > shards.size()) {
+            throw new IllegalArgumentException("previous-ring-size must be between 0 and " + shards.size()
+                + ", was " + previousRingSize);
+        }
+        this.shards = List.copyOf(shards);
+        this.ring = new ConsistentHashRing(shards, virtualNodes);
+        this.previousRing = previousRingSize == 0 || previousRingSize == shards.size()
+            ? null
+            : new ConsistentHashRing(shards.subList(0, previousRingSize), virtualNodes);
+        this.idGenerator = idGenerator;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public List<String> shards() {
+        return shards;
+    }
+
+    public String owner(long patientId) {
+        return ring.owner(patientId);
+    }
+
+    /**
+     * @return the shard that owned {@code patientId} before the rebalance, or null when it is the current owner or no
+     * rebalance is in progress
+     */
+    public String previousOwner(long patientId) {
+        if (previousRing == null) {
+            return null;
+        }
+        String previous = previousRing.owner(patientId);
+        return previous.equals(ring.owner(patientId)) ? null : previous;
+    }
+
+    public boolean isRebalancing() {
+        return previousRing != null;
+    }
+
+    /**
+     * The shard that holds {@code patientId} right now: its owner, unless a rebalance hasn't moved it there yet.
+     */
+    public String locate(long patientId) {
+        String owner = owner(patientId);
+        String previous = previousOwner(patientId);
+        if (previous == null || exists(owner, patientId) || !exists(previous, patientId)) {
+            return owner;
+        }
+        return previous;
+    }
+
+    public long nextId() {
+        return idGenerator.nextId();
+    }
+
+    /**
+     * An ID that {@code shard} owns, for inserts that are already bound to that shard's transaction.
+     */
+    public long nextIdOn(String shard) {
+        long patientId;
+        do {
+            patientId = idGenerator.nextId();
+        } while (!owner(patientId).equals(shard));
+        return patientId;
+    }
+
+    public <T> T on(String shard, Supplier<T> work) {
+        return ShardContext.on(shard, work);
+    }
+
+    /**
+     * Runs {@code work} on every shard in parallel, each on its own thread and so in its own transaction.
+     *
+     * @return shard name to result, in shard order
+     */
+    public <T> Map<String, T> onEachShard(Function<String, T> work) {
+        Map<String, Future<T>> futures = new LinkedHashMap<>();
+        for (String shard : shards) {
+            futures.put(shard, scatter.submit(() -> ShardContext.on(shard, () -> work.apply(shard))));
+        }
+        Map<String, T> results = new LinkedHashMap<>();
+        List<Throwable> failures = new ArrayList<>();
+        for (Map.Entry<String, Future<T>> future : futures.entrySet()) {
+            try {
+                results.put(future.getKey(), future.getValue().get());
+            } catch (ExecutionException e) {
+                failures.add(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.values().forEach(pending -> pending.cancel(true));
+                throw new IllegalStateException("Interrupted while waiting for the shards", e);
+            }
+        }
+        if (!failures.isEmpty()) {
+            Throwable first = failures.get(0);
+            failures.subList(1, failures.size()).forEach(first::addSuppressed);
+            if (first instanceof RuntimeException) {
+                throw (RuntimeException) first;
+            }
+            if (first instanceof Error) {
+                throw (Error) first;
+            }
+            throw new IllegalStateException(first);
+        }
+        return results;
+    }
+
+    private boolean exists(String shard, long patientId) {
+        Integer count = on(shard, () -> jdbcTemplate.queryForObject(
+            "select count(*) from patient_record where patient_id = ?", Integer.class, patientId));
+        return count != null && count > 0;
+    }
+
+    @Override
+    public void close() {
+        scatter.shutdownNow();
+    }
+}
@@ -0,0 +1,141 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.sharding;
+
+import com.suryansh.patientcrud.repository.PatientRecordRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import javax.sql.DataSource;
+import org.springframework.aop.framework.AopInfrastructureBean;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+/**
+ * Sharding of {@code patient_record}, enabled by {@code patient.sharding.shard-urls}. Every shard gets a pool with the
+ * {@code spring.datasource.hikari.*} settings; {@code spring.datasource.url} is not used. Hibernate only ever sees the
+ * first shard at startup, so schema generation ({@code spring.jpa.hibernate.ddl-auto}) must stay off and the schema
+ * comes from {@code db/patient-shard-schema.sql} with {@code patient.sharding.initialize-schema=true}, or from the
+ * usual migrations run against each shard.
+ * <p>
+ * Can't be combined with read replicas: each would need its own replica set per shard.
+ */
+@Configuration
+@ConditionalOnProperty(name = "patient.sharding.shard-urls")
+public class ShardingConfig {
+
+    @Bean
+    public ShardRoutingDataSource shardRoutingDataSource(
+        Environment environment,
+        @Value("${patient.sharding.shard-urls}") List<String> shardUrls,
+        @Value("${patient.sharding.username:${spring.datasource.username:}}") String username,
+        @Value("${patient.sharding.password:${spring.datasource.password:}}") String password,
+        @Value("${patient.sharding.initialize-schema:false}") boolean initializeSchema) {
+        if (environment.containsProperty("patient.datasource.replica-urls")) {
+            throw new IllegalStateException("patient.sharding.shard-urls and patient.datasource.replica-urls can't be combined");
+        }
+        Map<String, HikariDataSource> shards = new LinkedHashMap<>();
+        for (int i = 0; i < shardUrls.size(); i++) {
+            HikariDataSource shard = new HikariDataSource();
+            Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(shard));
+            shard.setPoolName("shard-" + i);
+            shard.setJdbcUrl(shardUrls.get(i).trim());
+            shard.setUsername(username);
+            shard.setPassword(password);
+            shards.put(shard.getPoolName(), shard);
+        }
+        if (initializeSchema) {
+            ResourceDatabasePopulator schema = new ResourceDatabasePopulator(new ClassPathResource("db/patient-shard-schema.sql"));
+            shards.values().forEach(schema::execute);
+        }
+        return new ShardRoutingDataSource(shards);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+
+    @Bean
+    public ShardRouter shardRouter(
+        ShardRoutingDataSource shardRoutingDataSource,
+        JdbcTemplate jdbcTemplate,
+        @Value("${patient.sharding.worker-id:0}") int workerId,
+        @Value("${patient.sharding.virtual-nodes:128}") int virtualNodes,
+        @Value("${patient.sharding.previous-ring-size:0}") int previousRingSize) {
+        List<String> shards = shardRoutingDataSource.shardPools().stream().map(HikariDataSource::getPoolName)
+            .collect(Collectors.toList());
+        return new ShardRouter(shards, previousRingSize, virtualNodes, new SnowflakeIdGenerator(workerId), jdbcTemplate);
+    }
+
+    /**
+     * Takes the place of the Spring Data repository for everything that injects {@link PatientRecordRepository}.
+     * Marked as AOP infrastructure so that the repository's {@code @Transactional} methods aren't wrapped in a
+     * transaction out here as well: that one would hold a single shard's connection across all the shards a call
+     * touches. Transactions start on the Spring Data repository underneath, once the shard is chosen.
+     */
+    @Bean
+    @Primary
+    public PatientRecordRepository shardedPatientRecordRepository(
+        @Qualifier("patientRecordRepository") PatientRecordRepository patientRecordRepository,
+        ShardRouter shardRouter,
+        @Value("${patient.stream.fetch-size:500}") int pageSize) {
+        ProxyFactory proxyFactory = new ProxyFactory(PatientRecordRepository.class, AopInfrastructureBean.class);
+        proxyFactory.addAdvice(new ShardingRepositoryInterceptor(patientRecordRepository, shardRouter, pageSize));
+        return (PatientRecordRepository) proxyFactory.getProxy();
+    }
+
+    @Bean
+    public ShardRebalancer shardRebalancer(ShardRouter shardRouter, JdbcTemplate jdbcTemplate,
+                                           @Value("${patient.sharding.rebalance-page-size:500}") int pageSize) {
+        return new ShardRebalancer(shardRouter, jdbcTemplate, pageSize);
+    }
+
+    /**
+     * Actuator only instruments a pool it can unwrap from the {@code DataSource} bean, which a router isn't.
+     */
+    @Bean
+    public MeterBinder shardPoolMetrics(ShardRoutingDataSource shardRoutingDataSource) {
+        return registry -> {
+            MicrometerMetricsTrackerFactory metricsTrackerFactory = new MicrometerMetricsTrackerFactory(registry);
+            shardRoutingDataSource.shardPools().forEach(pool -> pool.setMetricsTrackerFactory(metricsTrackerFactory));
+        };
+    }
+}
@@ -0,0 +1,286 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.sharding;
+
+import com.suryansh.patientcrud.entity.PatientRecord;
+import com.suryansh.patientcrud.projection.PatientFieldSet;
+import com.suryansh.patientcrud.projection.SparsePatientRecord;
+import com.suryansh.patientcrud.repository.PatientRecordRepository;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * Puts {@link PatientRecordRepository} in front of the shards. Calls for one ID go to the shard that holds it; calls
+ * without one are scattered to every shard in parallel and the pages merged back into {@code patientId} order. New
+ * records get a {@link SnowflakeIdGenerator} ID before they are routed, since the ID decides the shard.
+ * <p>
+ * A call made while {@link ShardContext} is already set is part of a transaction on that shard and runs there
+ * unchanged; that is how {@code PatientRecordBatchService} writes a chunk's records for one shard together.
+ * Every method of {@link PatientRecordRepository} has to be routed here; that is checked at startup, so a new
+ * repository method that isn't fails the context instead of its first request.
+ */
+class ShardingRepositoryInterceptor implements MethodInterceptor {
+
+    /** Method names {@link #invoke} routes; keep in line with its switch. */
+    private static final Set<String> ROUTED = Set.of("findById", "findByIdForUpdate", "existsById",
+        "updateIfVersionMatches", "updateById", "deleteIfVersionMatches", "deleteRecordById", "save", "saveAll",
+        "findAllById", "count", "findAll", "findByPatientIdGreaterThanOrderByPatientIdAsc", "findPage",
+        "findFieldsPage", "findFieldsById", "countByAge", "countByAddress", "forEachOrderedById");
+
+    private final PatientRecordRepository target;
+    private final ShardRouter router;
+    private final int pageSize;
+
+    ShardingRepositoryInterceptor(PatientRecordRepository target, ShardRouter router, int pageSize) {
+        checkRouted();
+        this.target = target;
+        this.router = router;
+        this.pageSize = pageSize;
+    }
+
+    private static void checkRouted() {
+        // Including the methods inherited from PatientRecordRepositoryCustom.
+        for (Method method : PatientRecordRepository.class.getMethods()) {
+            if (!ROUTED.contains(method.getName())) {
+                throw new IllegalStateException("PatientRecordRepository." + method.getName()
+                    + " has no routing in ShardingRepositoryInterceptor and can't be used on a sharded table");
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Method method = invocation.getMethod();
+        Object[] args = invocation.getArguments();
+        String shard = ShardContext.current();
+        if (method.getDeclaringClass() == Object.class) {
+            return AopUtils.invokeJoinpointUsingReflection(target, method, args);
+        }
+        if (shard != null) {
+            if (args.length == 1 && args[0] instanceof PatientRecord) {
+                assignId((PatientRecord) args[0], shard);
+            } else if (args.length == 1 && args[0] instanceof Iterable && method.getName().startsWith("save")) {
+                ((Iterable<PatientRecord>) args[0]).forEach(record -> assignId(record, shard));
+            }
+            return AopUtils.invokeJoinpointUsingReflection(target, method, args);
+        }
+
+        switch (method.getName()) {
+            case "findById":
+                return onHolder((Long) args[0], () -> target.findById((Long) args[0]), Optional::isPresent);
+            case "findByIdForUpdate":
+                // The write paths call this inside their transaction on the shard (see above); otherwise like findById.
+                return onHolder((Long) args[0], () -> target.findByIdForUpdate((Long) args[0]), Optional::isPresent);
+            case "existsById":
+                return onHolder((Long) args[0], () -> target.existsById((Long) args[0]), Boolean::booleanValue);
+            case "updateIfVersionMatches":
+            case "updateById":
+            case "deleteIfVersionMatches":
+                return onHolder((Long) args[0], () -> (Integer) call(method, args), updated -> updated > 0);
+            case "deleteRecordById":
+                return deleteRecordById((Long) args[0]);
+            case "save":
+                return save(method, (PatientRecord) args[0]);
+            case "saveAll":
+                return saveAll((Iterable<PatientRecord>) args[0]);
+            case "findAllById":
+                return findAllById((Iterable<Long>) args[0]);
+            case "count":
+                return router.onEachShard(ignored -> target.count()).values().stream().mapToLong(Long::longValue).sum();
+            case "findAll":
+                return merge(router.onEachShard(ignored -> target.findAll()).values(), Integer.MAX_VALUE,
+                    PatientRecord::getPatientId);
+            case "findByPatientIdGreaterThanOrderByPatientIdAsc":
+                return merge(router.onEachShard(ignored ->
+                        target.findByPatientIdGreaterThanOrderByPatientIdAsc((Long) args[0], (Pageable) args[1])).values(),
+                    ((Pageable) args[1]).isPaged() ? ((Pageable) args[1]).getPageSize() : Integer.MAX_VALUE,
+                    PatientRecord::getPatientId);
+            case "findPage":
+                return findPage((Specification<PatientRecord>) args[0], (Long) args[1], (Integer) args[2]);
+            case "findFieldsPage":
+                return merge(router.onEachShard(ignored -> target.findFieldsPage((PatientFieldSet) args[0],
+                        (Specification<PatientRecord>) args[1], (Long) args[2], (Integer) args[3])).values(),
+                    (Integer) args[3], SparsePatientRecord::getPatientId);
+            case "findFieldsById":
+                return onHolder((Long) args[1], () -> target.findFieldsById((PatientFieldSet) args[0], (Long) args[1]),
+                    Optional::isPresent);
+            case "countByAge":
+                return sumCounts(router.onEachShard(ignored -> target.countByAge()).values());
+            case "countByAddress":
+                return sumCounts(router.onEachShard(ignored -> target.countByAddress()).values());
+            case "forEachOrderedById":
+                forEachOrderedById((Consumer<? super PatientRecord>) args[0]);
+                return null;
+            default:
+                break;
+        }
+        throw new UnsupportedOperationException("PatientRecordRepository." + method.getName()
+            + " is not supported on a sharded table");
+    }
+
+    private void assignId(PatientRecord record, String shard) {
+        if (record.getPatientId() == null) {
+            record.setPatientId(router.nextIdOn(shard));
+        }
+    }
+
+    /**
+     * Runs {@code work} on the record's owner and, while a rebalance hasn't moved it there yet, on its previous owner
+     * when the owner doesn't have it.
+     */
+    private <T> T onHolder(long patientId, Supplier<T> work, Predicate<T> found) {
+        T result = router.on(router.owner(patientId), work);
+        String previous = router.previousOwner(patientId);
+        if (previous == null || found.test(result)) {
+            return result;
+        }
+        return router.on(previous, work);
+    }
+
+    // During a rebalance the record can briefly exist on both shards; both copies have to go.
+    private int deleteRecordById(long patientId) {
+        int deleted = router.on(router.owner(patientId), () -> target.deleteRecordById(patientId));
+        String previous = router.previousOwner(patientId);
+        if (previous != null) {
+            deleted += router.on(previous, () -> target.deleteRecordById(patientId));
+        }
+        return Math.min(deleted, 1);
+    }
+
+    /**
+     * A record without a version is new and gets a fresh ID, whatever it carried; the sequence generator does the
+     * same without sharding.
+     */
+    private Object save(Method method, PatientRecord record) {
+        return router.on(route(record), () -> call(method, record));
+    }
+
+    private String route(PatientRecord record) {
+        if (record.getVersion() == null || record.getPatientId() == null) {
+            record.setPatientId(router.nextId());
+            return router.owner(record.getPatientId());
+        }
+        return router.locate(record.getPatientId());
+    }
+
+    /**
+     * One transaction per shard: a failure on one shard doesn't roll back the others.
+     */
+    private List<PatientRecord> saveAll(Iterable<PatientRecord> records) {
+        Map<String, List<PatientRecord>> byShard = new LinkedHashMap<>();
+        for (PatientRecord record : records) {
+            byShard.computeIfAbsent(route(record), ignored -> new ArrayList<>()).add(record);
+        }
+        List<PatientRecord> saved = new ArrayList<>();
+        byShard.forEach((shard, group) -> saved.addAll(router.on(shard, () -> target.saveAll(group))));
+        return saved;
+    }
+
+    private List<PatientRecord> findAllById(Iterable<Long> patientIds) {
+        Map<String, List<Long>> byOwner = new LinkedHashMap<>();
+        patientIds.forEach(patientId -> byOwner.computeIfAbsent(router.owner(patientId), ignored -> new ArrayList<>()).add(patientId));
+        List<PatientRecord> found = new ArrayList<>();
+        router.onEachShard(shard -> target.findAllById(byOwner.getOrDefault(shard, List.of()))).values().forEach(found::addAll);
+        if (router.isRebalancing()) {
+            Set<Long> seen = found.stream().map(PatientRecord::getPatientId).collect(Collectors.toSet());
+            Map<String, List<Long>> byPrevious = new LinkedHashMap<>();
+            byOwner.values().stream().flatMap(List::stream)
+                .filter(patientId -> !seen.contains(patientId) && router.previousOwner(patientId) != null)
+                .forEach(patientId -> byPrevious.computeIfAbsent(router.previousOwner(patientId), ignored -> new ArrayList<>()).add(patientId));
+            byPrevious.forEach((shard, missing) -> found.addAll(router.on(shard, () -> target.findAllById(missing))));
+        }
+        return found;
+    }
+
+    private static <K> Map<K, Long> sumCounts(Collection<Map<K, Long>> perShard) {
+        Map<K, Long> total = new HashMap<>();
+        perShard.forEach(counts -> counts.forEach((key, count) -> total.merge(key, count, Long::sum)));
+        return total;
+    }
+
+    private List<PatientRecord> findPage(Specification<PatientRecord> spec, long afterId, int limit) {
+        return merge(router.onEachShard(ignored -> target.findPage(spec, afterId, limit)).values(), limit,
+            PatientRecord::getPatientId);
+    }
+
+    /**
+     * Walks the shards in merged ID order one keyset page at a time, so at most a page per shard is held in memory.
+     */
+    private void forEachOrderedById(Consumer<? super PatientRecord> action) {
+        long afterId = 0;
+        List<PatientRecord> page;
+        do {
+            page = findPage(null, afterId, pageSize);
+            page.forEach(action);
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).getPatientId();
+            }
+        } while (page.size() == pageSize);
+    }
+
+    /**
+     * Merges per-shard pages, each already in ID order, into the first {@code limit} records overall. A record being
+     * moved by a rebalance can show up on two shards; it is kept once.
+     */
+    private static <T> List<T> merge(Collection<List<T>> pages, int limit, Function<T, Long> patientId) {
+        TreeMap<Long, T> merged = new TreeMap<>();
+        pages.forEach(page -> page.forEach(record -> merged.putIfAbsent(patientId.apply(record), record)));
+        List<T> records = new ArrayList<>(Math.min(merged.size(), limit));
+        for (T record : merged.values()) {
+            if (records.size() == limit) {
+                break;
+            }
+            records.add(record);
+        }
+        return records;
+    }
+
+    private Object call(Method method, Object... args) {
+        try {
+            return AopUtils.invokeJoinpointUsingReflection(target, method, args);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud.sharding;
+
+import java.time.Instant;
+
+/**
+ * Coordination-free 63-bit IDs: 41 bits of milliseconds since 2020-01-01, a 10-bit worker ID and a 12-bit
+ * per-millisecond sequence. Two instances never collide as long as their worker IDs differ, and IDs are roughly
+ * time-ordered across instances, which keeps keyset pagination in creation order.
+ * <p>
+ * If the wall clock steps back the generator keeps counting from the last millisecond it used instead of waiting or
+ * failing; once 4096 IDs have been handed out in a millisecond it borrows the next one.
+ */
+public final class SnowflakeIdGenerator {
+
+    static final long EPOCH = Instant.parse("2020-01-01T00:00:00Z").toEpochMilli();
+
+    private static final int WORKER_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    public static final int MAX_WORKER_ID = (1 << WORKER_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long worker;
+    private long lastMillis = -1;
+    private long sequence;
+
+    public SnowflakeIdGenerator(int workerId) {
+        if (workerId < 0 || workerId > MAX_WORKER_ID) {
+            throw new IllegalArgumentException("Worker ID must be between 0 and " + MAX_WORKER_ID + ", was " + workerId);
+        }
+        this.worker = (long) workerId << SEQUENCE_BITS;
+    }
+
+    public synchronized long nextId() {
+        long millis = Math.max(System.currentTimeMillis() - EPOCH, lastMillis);
+        if (millis == lastMillis) {
+            sequence = (sequence + 1) & SEQUENCE_MASK;
+            if (sequence == 0) {
+                millis++;
+            }
+        } else {
+            sequence = 0;
+        }
+        lastMillis = millis;
+        return millis << (WORKER_BITS + SEQUENCE_BITS) | worker | sequence;
+    }
+}
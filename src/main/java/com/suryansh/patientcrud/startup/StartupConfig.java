@@ -0,0 +1,48 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+package com.suryansh.patientcrud.startup;
+
+import com.suryansh.patientcrud.changes.PatientChangeFeed;
+import com.suryansh.patientcrud.changes.PatientChangeLog;
+import com.suryansh.patientcrud.routing.ReplicaRoutingDataSource;
+import com.suryansh.patientcrud.search.PatientSearchIndex;
+import com.suryansh.patientcrud.service.PatientRecordGroupCommitter;
+import com.suryansh.patientcrud.stats.PatientStatistics;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class StartupConfig {
+
+    /**
+     * With {@code spring.main.lazy-initialization} (the {@code fast-startup} profile) beans are only created when
+     * first used. These have to exist from the start anyway: their {@code @Scheduled} work is only registered once
+     * the bean is created, or they load state that the first request must find in place.
+     */
+    @Bean
+    static LazyInitializationExcludeFilter eagerPatientBeans() {
+        return LazyInitializationExcludeFilter.forBeanTypes(PatientChangeLog.class, PatientChangeFeed.class,
+            PatientStatistics.class, PatientSearchIndex.class, PatientRecordGroupCommitter.class,
+            ReplicaRoutingDataSource.class);
+    }
+}
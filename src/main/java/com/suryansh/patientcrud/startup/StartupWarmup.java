@@ -0,0 +1,125 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+package com.suryansh.patientcrud.startup;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.suryansh.patientcrud.entity.PatientRecord;
+import com.suryansh.patientcrud.repository.PatientRecordRepository;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs the hot paths once before the first real request does, enabled by {@code patient.startup.warmup.enabled}:
+ * repository lookups and keyset pages (Hibernate's query plans, the connection pool), Jackson round trips of
+ * records, and GET requests to this instance's own {@code /patient} endpoints (Tomcat, the filters, message
+ * converters). Everything is read-only. It runs on {@code ApplicationReadyEvent}, before the instance reports itself
+ * ready for traffic.
+ * <p>
+ * With {@code patient.startup.exit-after-warmup} the application stops once warmed up. That is the training run
+ * the {@code fast-startup} Maven profile records its class-data sharing archive from.
+ */
+@Component
+public class StartupWarmup {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupWarmup.class);
+
+    @Autowired PatientRecordRepository patientRecordRepository;
+    @Autowired ObjectMapper objectMapper;
+
+    @Value("${patient.startup.warmup.enabled:false}") boolean enabled;
+    @Value("${patient.startup.warmup.iterations:20}") int iterations;
+    @Value("${patient.startup.exit-after-warmup:false}") boolean exitAfterWarmup;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp(ApplicationReadyEvent event) {
+        if (!enabled && !exitAfterWarmup) {
+            return;
+        }
+        ConfigurableApplicationContext context = event.getApplicationContext();
+        long start = System.currentTimeMillis();
+        try {
+            for (int i = 0; i < iterations; i++) {
+                warmUpRepository();
+                warmUpJackson();
+            }
+            Integer port = context.getEnvironment().getProperty("local.server.port", Integer.class);
+            if (port != null) {
+                warmUpHttp(port);
+            }
+            log.info("Warmed up in {} ms", System.currentTimeMillis() - start);
+        } catch (IOException | RuntimeException e) {
+            // A cold start is slower, not broken.
+            log.warn("Startup warm-up failed: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (exitAfterWarmup) {
+            System.exit(SpringApplication.exit(context));
+        }
+    }
+
+    private void warmUpRepository() {
+        patientRecordRepository.findById(0L);
+        patientRecordRepository.findByPatientIdGreaterThanOrderByPatientIdAsc(0L, PageRequest.of(0, 1));
+        patientRecordRepository.findPage(null, 0L, 1);
+    }
+
+    private void warmUpJackson() throws IOException {
+        PatientRecord sample = new PatientRecord(1L, "Warm-up", 30, "1 Station Road, Lucknow", 0L);
+        byte[] json = objectMapper.writeValueAsBytes(List.of(sample));
+        objectMapper.readValue(json, new TypeReference<List<PatientRecord>>() { });
+        objectMapper.readValue(objectMapper.writeValueAsBytes(sample), PatientRecord.class);
+    }
+
+    /**
+     * A page and a single record by ID; an empty table still warms the 404 path.
+     */
+    private void warmUpHttp(int port) throws IOException, InterruptedException {
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+        URI base = URI.create("http://localhost:" + port + "/patient");
+        for (int i = 0; i < iterations; i++) {
+            HttpResponse<String> page = client.send(HttpRequest.newBuilder(URI.create(base + "?limit=1")).build(),
+                HttpResponse.BodyHandlers.ofString());
+            JsonNode records = page.statusCode() == 200 ? objectMapper.readTree(page.body()) : null;
+            long patientId = records != null && records.size() > 0 ? records.get(0).get("patientId").asLong() : 0;
+            client.send(HttpRequest.newBuilder(URI.create(base + "/" + patientId)).build(),
+                HttpResponse.BodyHandlers.discarding());
+        }
+    }
+}
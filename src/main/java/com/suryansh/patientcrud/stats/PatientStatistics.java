@@ -0,0 +1,284 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+package com.suryansh.patientcrud.stats;
+
+import com.suryansh.patientcrud.entity.PatientRecord;
+import com.suryansh.patientcrud.repository.PatientRecordRepository;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Aggregate counts behind {@code GET /patient/stats}: total, per age bracket and per city, kept in memory and moved
+ * by every write so that reading them never touches the table.
+ * <p>
+ * Writers report each change with {@link #record} inside their transaction; it is applied once the transaction has
+ * committed. Updates and deletes therefore need the record's previous age and address, which the write paths read
+ * (and lock) first while this is enabled, which is why it is off by default. Writes that bypass those paths leave the
+ * counters off; every {@code patient.stats.reconcile-interval} they are recomputed from the table with two
+ * {@code GROUP BY} queries and any drift is logged and corrected. Changes applied while {@link #reconcile} scans are
+ * replayed onto the recomputed counts, so only a write that commits before the scan but is applied during it is
+ * counted twice, until the next run.
+ * <p>
+ * The city is the last comma-separated part of the address, or the whole address when it has no comma, trimmed,
+ * lower-cased and with runs of whitespace collapsed.
+ */
+@Component
+public class PatientStatistics {
+
+    private static final Logger log = LoggerFactory.getLogger(PatientStatistics.class);
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final String UNKNOWN = "unknown";
+    /** Bracket of records without an age; sorts last. */
+    private static final int NO_AGE = Integer.MAX_VALUE;
+
+    private final PatientRecordRepository patientRecordRepository;
+    private final boolean enabled;
+    private final int bracketSize;
+    private final Object reconcileLock = new Object();
+
+    // Guarded by this.
+    private Counts counts = new Counts();
+    private Instant reconciledAt;
+    /** Changes applied since the running {@link #reconcile} started scanning; null while none runs. */
+    private List<Key[]> appliedDuringScan;
+
+    @Autowired
+    public PatientStatistics(PatientRecordRepository patientRecordRepository,
+                             @Value("${patient.stats.enabled:false}") boolean enabled,
+                             @Value("${patient.stats.age-bracket-size:10}") int bracketSize) {
+        this.patientRecordRepository = patientRecordRepository;
+        this.enabled = enabled;
+        this.bracketSize = bracketSize;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Counts a committed write: {@code previous} is the record before it (null for a create), {@code current} the
+     * record after it (null for a delete). Inside a transaction it is applied on commit and dropped on rollback.
+     */
+    public void record(PatientRecord previous, PatientRecord current) {
+        if (!enabled || (previous == null && current == null)) {
+            return;
+        }
+        // Read age and address now: the entities can change before the commit.
+        Key removed = previous == null ? null : key(previous);
+        Key added = current == null ? null : key(current);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(removed, added);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                apply(removed, added);
+            }
+        });
+    }
+
+    /**
+     * The current counts. When disabled they are computed from the table on every call.
+     */
+    public PatientStats get() {
+        if (!enabled) {
+            return toStats(countTable(), null);
+        }
+        synchronized (this) {
+            return toStats(counts, reconciledAt);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        try {
+            reconcile();
+        } catch (RuntimeException e) {
+            // Until the next scheduled run the counters only hold the writes since startup.
+            log.warn("Could not load patient stats from the table: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Recomputes the counters from the table and replaces the incrementally maintained ones.
+     */
+    @Scheduled(fixedDelayString = "${patient.stats.reconcile-interval:300000}",
+        initialDelayString = "${patient.stats.reconcile-interval:300000}")
+    public void reconcile() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (reconcileLock) {
+            long start = System.currentTimeMillis();
+            synchronized (this) {
+                appliedDuringScan = new ArrayList<>();
+            }
+            Counts fresh;
+            try {
+                fresh = countTable();
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    appliedDuringScan = null;
+                }
+                throw e;
+            }
+            boolean drifted;
+            long previousTotal;
+            synchronized (this) {
+                appliedDuringScan.forEach(change -> fresh.apply(change[0], change[1]));
+                appliedDuringScan = null;
+                drifted = reconciledAt != null && !counts.sameAs(fresh);
+                previousTotal = counts.total;
+                counts = fresh;
+                reconciledAt = Instant.now();
+            }
+            if (drifted) {
+                log.warn("Patient stats had drifted from the table (total {} instead of {}); corrected", previousTotal,
+                    fresh.total);
+            }
+            log.debug("Reconciled patient stats over {} patients in {} ms", fresh.total,
+                System.currentTimeMillis() - start);
+        }
+    }
+
+    private synchronized void apply(Key removed, Key added) {
+        counts.apply(removed, added);
+        if (appliedDuringScan != null) {
+            appliedDuringScan.add(new Key[] {removed, added});
+        }
+    }
+
+    private Counts countTable() {
+        Counts table = new Counts();
+        patientRecordRepository.countByAge().forEach((age, count) -> {
+            table.addBracket(bracket(age), count);
+            table.total += count;
+        });
+        patientRecordRepository.countByAddress().forEach((address, count) -> table.addCity(city(address), count));
+        return table;
+    }
+
+    private PatientStats toStats(Counts source, Instant reconciledAt) {
+        Map<String, Long> byAge = new LinkedHashMap<>();
+        source.byBracket.forEach((bracket, count) -> byAge.put(label(bracket), count));
+        Map<String, Long> byCity = new LinkedHashMap<>();
+        source.byCity.entrySet().stream()
+            .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()).thenComparing(Map.Entry.comparingByKey()))
+            .forEach(entry -> byCity.put(entry.getKey(), entry.getValue()));
+        return new PatientStats(source.total, byAge, byCity, reconciledAt);
+    }
+
+    private Key key(PatientRecord patientRecord) {
+        return new Key(bracket(patientRecord.getAge()), city(patientRecord.getAddress()));
+    }
+
+    private int bracket(Integer age) {
+        return age == null ? NO_AGE : Math.floorDiv(age, bracketSize);
+    }
+
+    private String label(int bracket) {
+        if (bracket == NO_AGE) {
+            return UNKNOWN;
+        }
+        int from = bracket * bracketSize;
+        return bracketSize == 1 ? String.valueOf(from) : from + "-" + (from + bracketSize - 1);
+    }
+
+    static String city(String address) {
+        if (address == null) {
+            return UNKNOWN;
+        }
+        String city = address.substring(address.lastIndexOf(',') + 1).trim();
+        city = WHITESPACE.matcher(city).replaceAll(" ").toLowerCase(Locale.ROOT);
+        return city.isEmpty() ? UNKNOWN : city;
+    }
+
+    private static final class Key {
+        private final int bracket;
+        private final String city;
+
+        Key(int bracket, String city) {
+            this.bracket = bracket;
+            this.city = city;
+        }
+    }
+
+    /**
+     * Counters without any locking of their own. Entries that reach zero are removed.
+     */
+    private static final class Counts {
+        private long total;
+        private final TreeMap<Integer, Long> byBracket = new TreeMap<>();
+        private final Map<String, Long> byCity = new HashMap<>();
+
+        void apply(Key removed, Key added) {
+            if (removed != null) {
+                add(removed, -1);
+            }
+            if (added != null) {
+                add(added, 1);
+            }
+        }
+
+        void add(Key key, long delta) {
+            total += delta;
+            addBracket(key.bracket, delta);
+            addCity(key.city, delta);
+        }
+
+        void addBracket(int bracket, long delta) {
+            byBracket.compute(bracket, (ignored, count) -> nonZero(count, delta));
+        }
+
+        void addCity(String city, long delta) {
+            byCity.compute(city, (ignored, count) -> nonZero(count, delta));
+        }
+
+        boolean sameAs(Counts other) {
+            return total == other.total && byBracket.equals(other.byBracket) && byCity.equals(other.byCity);
+        }
+
+        private static Long nonZero(Long count, long delta) {
+            long sum = (count == null ? 0 : count) + delta;
+            return sum == 0 ? null : sum;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+package com.suryansh.patientcrud.stats;
+
+import java.time.Instant;
+import java.util.Map;
+import lombok.Value;
+
+/**
+ * Body of {@code GET /patient/stats}. {@code reconciledAt} is when the counters were last recomputed from the table;
+ * null until the first reconciliation has run, or when they are computed on request.
+ */
+@Value
+public class PatientStats {
+    long total;
+    /** Count per age bracket, e.g. {@code "30-39"}, in age order. */
+    Map<String, Long> byAge;
+    /** Count per normalized city, most patients first. */
+    Map<String, Long> byCity;
+    Instant reconciledAt;
+}
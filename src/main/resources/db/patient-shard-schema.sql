@@ -0,0 +1,28 @@
+-- Schema of one patient shard, applied to every shard with patient.sharding.initialize-schema=true.
+-- IDs are assigned by the application (Snowflake), so there is no sequence.
+-- MySQL syntax; H2 accepts it in MODE=MySQL.
+create table if not exists patient_record (
+    patient_id bigint not null,
+    name varchar(255) not null,
+    age integer not null,
+    address varchar(255) not null,
+    version bigint default 0 not null,
+    primary key (patient_id),
+    index idx_patient_record_name (name),
+    index idx_patient_record_age (age)
+);
+
+-- Change feed outbox, written in the same transaction as the record (see PatientChange).
+create table if not exists patient_change (
+    change_id bigint not null auto_increment,
+    patient_id bigint not null,
+    operation varchar(8) not null,
+    name varchar(255),
+    age integer,
+    address varchar(255),
+    version bigint,
+    changed_at timestamp(6) not null,
+    primary key (change_id),
+    index idx_patient_change_changed_at (changed_at),
+    index idx_patient_change_patient (patient_id, change_id)
+);
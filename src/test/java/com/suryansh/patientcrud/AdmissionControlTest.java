@@ -0,0 +1,161 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.suryansh.patientcrud.admission.AdaptiveConcurrencyLimiter;
+import com.suryansh.patientcrud.admission.AdmissionControlFilter;
+import com.suryansh.patientcrud.admission.AdmissionGroup;
+import com.suryansh.patientcrud.admission.Bulkhead;
+import com.suryansh.patientcrud.execution.ConcurrencyLimitFilter;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+/**
+ * Admission control on embedded H2: per-client rate limits, per-group bulkheads and the adaptive limit.
+ */
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:admission;MODE=MySQL;DB_CLOSE_DELAY=-1",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "patient.admission.enabled=true",
+    "patient.admission.bulkhead.list.max-concurrent=2",
+    "patient.admission.rate-limit.requests-per-second=0.1",
+    "patient.admission.rate-limit.burst=2",
+    "patient.cache.enabled=false"
+})
+@AutoConfigureMockMvc
+public class AdmissionControlTest {
+
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    AdmissionControlFilter admissionControlFilter;
+
+    @Test
+    public void rateLimit_rejectsClientOverItsBurstWith429() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(MockMvcRequestBuilders.get("/patient/1").header("X-Client-Id", "greedy"))
+                .andExpect(status().isNotFound());
+        }
+        mockMvc.perform(MockMvcRequestBuilders.get("/patient/1").header("X-Client-Id", "greedy"))
+            .andExpect(status().isTooManyRequests())
+            .andExpect(header().string(HttpHeaders.RETRY_AFTER, "10"));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/patient/1").header("X-Client-Id", "patient"))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void fullBulkhead_shedsOnlyItsOwnGroup() throws Exception {
+        Bulkhead list = admissionControlFilter.bulkheads().get(AdmissionGroup.LIST);
+        assertTrue(list.tryAcquire());
+        assertTrue(list.tryAcquire());
+        try {
+            mockMvc.perform(MockMvcRequestBuilders.get("/patient").header("X-Client-Id", "lister"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+            mockMvc.perform(MockMvcRequestBuilders.get("/patient/1").header("X-Client-Id", "reader"))
+                .andExpect(status().isNotFound());
+            mockMvc.perform(MockMvcRequestBuilders.get("/patient/admission").header("X-Client-Id", "operator"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.bulkheads.list.inFlight").value(2))
+                .andExpect(jsonPath("$.bulkheads.list.rejected").value(1))
+                .andExpect(jsonPath("$.bulkheads.get.inFlight").value(0));
+        } finally {
+            list.release();
+            list.release();
+        }
+    }
+
+    @Test
+    public void adaptiveLimit_shrinksOnSlowResponsesAndRecovers() {
+        long threshold = TimeUnit.MILLISECONDS.toNanos(100);
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 2, 20, threshold, 0.5);
+        // A single request doesn't use the limit, so it doesn't grow it.
+        assertTrue(limiter.tryAcquire());
+        limiter.release(threshold / 2, false);
+        assertEquals(10, limiter.limit());
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+        assertFalse(limiter.tryAcquire());
+        limiter.release(threshold * 2, false);
+        assertEquals(5, limiter.limit());
+        limiter.release(threshold / 2, true);
+        assertEquals(2, limiter.limit());
+
+        for (int i = 0; i < 8; i++) {
+            limiter.release(threshold / 2, false);
+        }
+        assertEquals(0, limiter.inFlight());
+        assertTrue(limiter.limit() > 2);
+        assertEquals(1, limiter.rejected());
+    }
+
+    @Test
+    public void groups() {
+        assertEquals(AdmissionGroup.GET, AdmissionGroup.of("GET", "/patient/42"));
+        assertEquals(AdmissionGroup.WRITE, AdmissionGroup.of("DELETE", "/patient/42"));
+        assertEquals(AdmissionGroup.LIST, AdmissionGroup.of("GET", "/patient"));
+        assertEquals(AdmissionGroup.LIST, AdmissionGroup.of("POST", "/patient/multi-get"));
+        assertEquals(AdmissionGroup.LIST, AdmissionGroup.of("GET", "/patient/search/typeahead"));
+        assertEquals(AdmissionGroup.WRITE, AdmissionGroup.of("PUT", "/patient"));
+        assertEquals(AdmissionGroup.BULK, AdmissionGroup.of("POST", "/patient/batch"));
+        assertEquals(AdmissionGroup.BULK, AdmissionGroup.of("GET", "/patient/export"));
+        assertEquals(AdmissionGroup.BULK, AdmissionGroup.of("GET", "/patient/stream"));
+        assertNull(AdmissionGroup.of("GET", "/patient/changes"));
+        assertNull(AdmissionGroup.of("GET", "/patient/admission"));
+    }
+
+    @Test
+    public void concurrencyLimit_holdsPermitUntilAsyncRequestCompletes() throws Exception {
+        ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(1, 0);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/patient/stream");
+        request.setAsyncSupported(true);
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> req.startAsync());
+        assertEquals(1, filter.inFlight());
+
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/patient/1"), rejected, (req, res) -> { });
+        assertEquals(503, rejected.getStatus());
+
+        request.getAsyncContext().complete();
+        assertEquals(0, filter.inFlight());
+    }
+}
@@ -0,0 +1,248 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 08/10/22
+ **************************************************************************/
+
+
+
+package com.suryansh.patientcrud;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.suryansh.patientcrud.changes.PatientChangeBatch;
+import com.suryansh.patientcrud.changes.PatientChangeLog;
+import com.suryansh.patientcrud.entity.PatientRecord;
+import com.suryansh.patientcrud.metrics.QueryCountInspector;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * The change feed end to end on embedded H2: writes through {@code /patient} land in the outbox, and come back out
+ * through long-poll and Server-Sent Events from a resumable offset.
+ */
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:changes;MODE=MySQL;DB_CLOSE_DELAY=-1",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "patient.changes.poll-interval=50",
+    "patient.changes.cleanup-interval=3600000",
+    "patient.cache.enabled=false"
+})
+@AutoConfigureMockMvc
+public class PatientChangeFeedTest {
+
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    ObjectMapper mapper;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    PatientChangeLog patientChangeLog;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Test
+    public void writes_appearInOrderAndResumeFromOffset() throws Exception {
+        String since = patientChangeLog.head();
+        long patientId = create("Feed Patient");
+        mockMvc.perform(MockMvcRequestBuilders.put("/patient")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .content(mapper.writeValueAsString(new PatientRecord(patientId, "Feed Patient", 41, "New Street", null))))
+            .andExpect(status().isOk());
+        mockMvc.perform(MockMvcRequestBuilders.delete("/patient/" + patientId)).andExpect(status().isOk());
+
+        JsonNode batch = poll(since, 0);
+        JsonNode changes = batch.get("changes");
+        assertEquals(3, changes.size());
+        assertEquals("SAVED", changes.get(0).get("operation").asText());
+        assertEquals("SAVED", changes.get(1).get("operation").asText());
+        assertEquals("New Street", changes.get(1).get("address").asText());
+        assertEquals(1L, changes.get(1).get("version").asLong());
+        assertEquals("DELETED", changes.get(2).get("operation").asText());
+        for (JsonNode change : changes) {
+            assertEquals(patientId, change.get("patientId").asLong());
+        }
+
+        JsonNode resumed = poll(batch.get("offset").asText(), 0);
+        assertEquals(0, resumed.get("changes").size());
+        assertEquals(batch.get("offset").asText(), resumed.get("offset").asText());
+    }
+
+    @Test
+    public void batchWrites_areRecorded() throws Exception {
+        String since = patientChangeLog.head();
+        mockMvc.perform(MockMvcRequestBuilders.post("/patient/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(List.of(new PatientRecord(null, "Batch A", 30, "Street"),
+                    new PatientRecord(null, "Batch B", 31, "Street")))))
+            .andExpect(status().isOk());
+
+        assertEquals(2, poll(since, 0).get("changes").size());
+    }
+
+    @Test
+    public void batchWrites_withAnInvalidRecord_areRejectedWhole() throws Exception {
+        String since = patientChangeLog.head();
+        mockMvc.perform(MockMvcRequestBuilders.post("/patient/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"name\": \"Batch OK\", \"age\": 30, \"address\": \"Street\"}, {\"name\": \"Batch Bad\"}]"))
+            .andExpect(status().isBadRequest());
+
+        assertEquals(0, poll(since, 0).get("changes").size());
+    }
+
+    @Test
+    public void longPoll_answersWithTheNextChange() throws Exception {
+        String since = patientChangeLog.head();
+        MvcResult waiting = mockMvc.perform(MockMvcRequestBuilders.get("/patient/changes")
+                .param("since", since)
+                .param("wait", "10")
+                .accept(MediaType.APPLICATION_JSON))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        long patientId = create("Awaited Patient");
+
+        String body = mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(waiting))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+        JsonNode changes = mapper.readTree(body).get("changes");
+        assertEquals(1, changes.size());
+        assertEquals(patientId, changes.get(0).get("patientId").asLong());
+    }
+
+    @Test
+    public void stream_sendsBatchesAsEventsWithOffsetIds() throws Exception {
+        String since = patientChangeLog.head();
+        MockHttpServletResponse response = mockMvc.perform(MockMvcRequestBuilders.get("/patient/changes")
+                .header("Last-Event-ID", since)
+                .accept(MediaType.TEXT_EVENT_STREAM))
+            .andExpect(request().asyncStarted())
+            .andReturn().getResponse();
+        create("Streamed Patient");
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!response.getContentAsString().contains("event:changes") && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        String events = response.getContentAsString();
+        assertTrue(events.contains("event:changes"), events);
+        assertTrue(events.contains("id:" + patientChangeLog.head()), events);
+        assertTrue(events.contains("Streamed Patient"), events);
+    }
+
+    @Test
+    public void changeLogStatements_areCountedPerRequest() {
+        QueryCountInspector.reset();
+        patientChangeLog.head();
+
+        assertEquals(2, QueryCountInspector.count());
+    }
+
+    @Test
+    public void badOffset_isRejected() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/patient/changes").param("since", "not-an-offset"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void openGap_holdsReadersUntilItTimesOut() {
+        String since = patientChangeLog.head();
+        TransactionTemplate rolledBack = new TransactionTemplate(transactionManager);
+        rolledBack.executeWithoutResult(status -> {
+            insertChange(900_010L, Instant.now());
+            status.setRollbackOnly();
+        });
+        long afterGap = insertChange(900_011L, Instant.now());
+
+        PatientChangeBatch held = patientChangeLog.read(since, 10);
+        assertEquals(0, held.getChanges().size());
+        assertEquals(since, held.getOffset());
+        assertEquals(since, patientChangeLog.head());
+
+        jdbcTemplate.update("update patient_change set changed_at = ? where change_id = ?",
+            Timestamp.from(Instant.now().minus(Duration.ofMinutes(1))), afterGap);
+        PatientChangeBatch skipped = patientChangeLog.read(since, 10);
+        assertEquals(1, skipped.getChanges().size());
+        assertEquals(String.valueOf(afterGap), skipped.getOffset());
+    }
+
+    @Test
+    public void cleanUp_dropsExpiredAndSupersededChanges() throws Exception {
+        Instant now = Instant.now();
+        long expired = insertChange(900_001L, now.minus(Duration.ofDays(8)));
+        long superseded = insertChange(900_002L, now.minus(Duration.ofHours(3)));
+        long latest = insertChange(900_002L, now.minus(Duration.ofHours(2)));
+        long recent = insertChange(900_003L, now.minus(Duration.ofMinutes(1)));
+        long recentLatest = insertChange(900_003L, now);
+
+        patientChangeLog.cleanUp();
+
+        List<Long> kept = jdbcTemplate.queryForList(
+            "select change_id from patient_change where patient_id >= 900000 order by change_id", Long.class);
+        assertEquals(List.of(latest, recent, recentLatest), kept);
+        assertTrue(expired < superseded);
+    }
+
+    private long insertChange(long patientId, Instant changedAt) {
+        jdbcTemplate.update("insert into patient_change (patient_id, operation, name, age, address, version, changed_at) "
+            + "values (?, 'SAVED', 'Old', 1, 'Old Street', 0, ?)", patientId, Timestamp.from(changedAt));
+        return jdbcTemplate.queryForObject("select max(change_id) from patient_change", Long.class);
+    }
+
+    private JsonNode poll(String since, int wait) throws Exception {
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/patient/changes")
+                .param("since", since)
+                .param("wait", String.valueOf(wait))
+                .accept(MediaType.APPLICATION_JSON))
+            .andReturn();
+        return mapper.readTree(mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString());
+    }
+
+    private long create(String name) throws Exception {
+        String body = mockMvc.perform(MockMvcRequestBuilders.post("/patient")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(new PatientRecord(null, name, 40, "Feed Street"))))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+        return mapper.readTree(body).get("patientId").asLong();
+    }
+}
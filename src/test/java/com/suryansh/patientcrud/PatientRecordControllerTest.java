@@ -26,30 +26,77 @@ import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.github.luben.zstd.ZstdInputStream;
+import com.suryansh.patientcrud.cache.PatientRecordCache;
+import com.suryansh.patientcrud.changes.PatientChangeLog;
+import com.suryansh.patientcrud.controller.PatientExportController;
+import com.suryansh.patientcrud.controller.PatientImportController;
 import com.suryansh.patientcrud.controller.PatientRecordController;
+import com.suryansh.patientcrud.encoding.PatientRecordProtobuf;
+import com.suryansh.patientcrud.encoding.PatientRecordProtobufHttpMessageConverter;
 import com.suryansh.patientcrud.entity.PatientRecord;
+import com.suryansh.patientcrud.exception.BadArgumentsException;
+import com.suryansh.patientcrud.exception.ConflictException;
 import com.suryansh.patientcrud.exception.InvalidRequestException;
 import com.suryansh.patientcrud.exception.ResourceNotFoundException;
+import com.suryansh.patientcrud.exception.ServiceUnavailableException;
+import com.suryansh.patientcrud.exporter.PatientExportFormat;
+import com.suryansh.patientcrud.exporter.PatientExportService;
+import com.suryansh.patientcrud.importer.PatientImportService;
+import com.suryansh.patientcrud.lookup.PatientRecordLoader;
+import com.suryansh.patientcrud.pagination.KeysetCursor;
+import com.suryansh.patientcrud.projection.SparsePatientRecord;
 import com.suryansh.patientcrud.repository.PatientRecordRepository;
+import com.suryansh.patientcrud.search.PatientSearchIndex;
+import com.suryansh.patientcrud.service.PatientRecordBatchService;
+import com.suryansh.patientcrud.service.PatientRecordGroupCommitter;
+import com.suryansh.patientcrud.service.PatientRecordWriteService;
+import com.suryansh.patientcrud.stats.PatientStatistics;
 import java.util.ArrayList;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
 
-@WebMvcTest(PatientRecordController.class)
+@WebMvcTest({PatientRecordController.class, PatientImportController.class, PatientExportController.class})
+@Import({PatientRecordCache.class, PatientRecordLoader.class, PatientSearchIndex.class, PatientImportService.class, PatientRecordWriteService.class})
 /**
  * 1. @SpringBootTest annotation loads the full application context so that we are able to test various components.
  *    So basically, the @SpringBootTest annotation tells Spring Boot to look for the main configuration class
@@ -70,27 +117,143 @@ public class PatientRecordControllerTest {
     @Autowired
     ObjectMapper mapper;
 
+    @Autowired
+    PatientRecordCache patientRecordCache;
+
     @MockBean
     PatientRecordRepository patientRecordRepository;
+    @MockBean
+    PatientRecordBatchService patientRecordBatchService;
+    @MockBean
+    PatientExportService patientExportService;
+    @MockBean
+    PatientRecordGroupCommitter patientRecordGroupCommitter;
+    @MockBean
+    PatientChangeLog patientChangeLog;
+    @MockBean
+    PatientStatistics patientStatistics;
+    @MockBean
+    PlatformTransactionManager transactionManager;
 
     PatientRecord RECORD_1 = new PatientRecord(1l, "Kopal Niranjan", 23, "Lucknow India");
     PatientRecord RECORD_2 = new PatientRecord(2l, "Suryansh Bhadouria", 27, "Lucknow India");
     PatientRecord RECORD_3 = new PatientRecord(3l, "Joan Arc", 31, "New York USA");
 
+    @AfterEach
+    public void clearCache() {
+        patientRecordCache.invalidateAll();
+    }
+
     @Test
     public void getAllRecords_success() throws Exception {
         List<PatientRecord> records = new ArrayList<>(Arrays.asList(RECORD_1, RECORD_2, RECORD_3));
 
-        Mockito.when(patientRecordRepository.findAll()).thenReturn(records);
+        Mockito.when(patientRecordRepository.findByPatientIdGreaterThanOrderByPatientIdAsc(0L, PageRequest.of(0, 101)))
+            .thenReturn(records);
 
         mockMvc.perform(MockMvcRequestBuilders
                 .get("/patient")
                 .contentType(MediaType.APPLICATION_JSON))
             .andExpect(status().isOk())
+            .andExpect(header().doesNotExist(PatientRecordController.NEXT_CURSOR_HEADER))
             .andExpect(jsonPath("$", hasSize(3)))
             .andExpect(jsonPath("$[2].name", is("Joan Arc")));
     }
 
+    @Test
+    public void getAllRecords_nextPage() throws Exception {
+        List<PatientRecord> records = new ArrayList<>(Arrays.asList(RECORD_2, RECORD_3));
+
+        Mockito.when(patientRecordRepository.findByPatientIdGreaterThanOrderByPatientIdAsc(1L, PageRequest.of(0, 2)))
+            .thenReturn(records);
+
+        mockMvc.perform(MockMvcRequestBuilders
+                .get("/patient")
+                .param("cursor", KeysetCursor.encode(1L))
+                .param("limit", "1")
+                .contentType(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(header().string(PatientRecordController.NEXT_CURSOR_HEADER, KeysetCursor.encode(2L)))
+            .andExpect(jsonPath("$", hasSize(1)))
+            .andExpect(jsonPath("$[0].name", is("Suryansh Bhadouria")));
+    }
+
+    @Test
+    public void getAllRecords_invalidCursor() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders
+                .get("/patient")
+                .param("cursor", "not-a-cursor")
+                .contentType(MediaType.APPLICATION_JSON))
+            .andExpect(status().isBadRequest())
+            .andExpect(result ->
+                assertTrue(result.getResolvedException() instanceof BadArgumentsException));
+    }
+
+    @Test
+    public void searchRecords_success() throws Exception {
+        Mockito.when(patientRecordRepository.findPage(Mockito.any(), Mockito.eq(0L), Mockito.eq(3)))
+            .thenReturn(new ArrayList<>(Arrays.asList(RECORD_1, RECORD_2, RECORD_3)));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                .get("/patient/search")
+                .param("address", "India")
+                .param("minAge", "20")
+                .param("maxAge", "40")
+                .param("limit", "2")
+                .contentType(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(header().string(PatientRecordController.NEXT_CURSOR_HEADER, KeysetCursor.encode(2L)))
+            .andExpect(jsonPath("$", hasSize(2)))
+            .andExpect(jsonPath("$[1].name", is("Suryansh Bhadouria")));
+    }
+
+    @Test
+    public void searchRecords_invalidAgeRange() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders
+                .get("/patient/search")
+                .param("minAge", "40")
+                .param("maxAge", "20")
+                .contentType(MediaType.APPLICATION_JSON))
+            .andExpect(status().isBadRequest())
+            .andExpect(result ->
+                assertEquals("minAge must not be greater than maxAge", result.getResolvedException().getMessage()));
+    }
+
+    @Test
+    public void typeahead_withoutIndex() throws Exception {
+        Mockito.when(patientRecordRepository.findPage(Mockito.any(), Mockito.eq(0L), Mockito.eq(10)))
+            .thenReturn(new ArrayList<>(Arrays.asList(RECORD_1)));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                .get("/patient/search/typeahead")
+                .param("q", "Kop")
+                .contentType(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$", hasSize(1)))
+            .andExpect(jsonPath("$[0].patientId", is(1)))
+            .andExpect(jsonPath("$[0].name", is("Kopal Niranjan")));
+    }
+
+    @Test
+    public void streamAllRecords_success() throws Exception {
+        Mockito.doAnswer(invocation -> {
+            Consumer<PatientRecord> action = invocation.getArgument(0);
+            action.accept(RECORD_1);
+            action.accept(RECORD_3);
+            return null;
+        }).when(patientRecordRepository).forEachOrderedById(Mockito.any());
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/patient/stream"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(PatientRecordController.NDJSON_VALUE))
+            .andExpect(content().string(
+                mapper.writeValueAsString(RECORD_1) + "\n" + mapper.writeValueAsString(RECORD_3) + "\n"));
+    }
+
     @Test
     public void getPatientById_success() throws Exception {
         Mockito.when(patientRecordRepository.findById(RECORD_1.getPatientId())).thenReturn(java.util.Optional.of(RECORD_1));
@@ -103,6 +266,38 @@ public class PatientRecordControllerTest {
             .andExpect(jsonPath("$.name", is("Kopal Niranjan")));
     }
 
+    @Test
+    public void getPatientById_cached() throws Exception {
+        Mockito.when(patientRecordRepository.findById(RECORD_1.getPatientId())).thenReturn(Optional.of(RECORD_1));
+        // The cache bean is shared by every test in this class, so only count the hits of this one.
+        long hitsBefore = patientRecordCache.stats().hitCount();
+
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(MockMvcRequestBuilders
+                    .get("/patient/1")
+                    .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name", is("Kopal Niranjan")));
+        }
+
+        Mockito.verify(patientRecordRepository, Mockito.times(1)).findById(RECORD_1.getPatientId());
+        assertEquals(2, patientRecordCache.stats().hitCount() - hitsBefore);
+    }
+
+    @Test
+    public void deletePatientById_invalidatesCache() throws Exception {
+        Mockito.when(patientRecordRepository.findById(RECORD_2.getPatientId())).thenReturn(Optional.of(RECORD_2));
+        patientRecordCache.get(RECORD_2.getPatientId());
+        Mockito.when(patientRecordRepository.deleteRecordById(RECORD_2.getPatientId())).thenReturn(1);
+
+        mockMvc.perform(MockMvcRequestBuilders
+                .delete("/patient/2")
+                .contentType(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk());
+
+        assertEquals(0, patientRecordCache.estimatedSize());
+    }
+
     @Test
     public void createRecord_success() throws Exception {
         PatientRecord record = PatientRecord.builder()
@@ -124,6 +319,85 @@ public class PatientRecordControllerTest {
             .andExpect(jsonPath("$.name", is("John Arc")));
     }
 
+    @Test
+    public void createRecord_withId() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.post("/patient")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(this.mapper.writeValueAsString(RECORD_1)))
+            .andExpect(status().isBadRequest());
+
+        Mockito.verify(patientRecordRepository, Mockito.never()).save(ArgumentMatchers.any());
+    }
+
+    @Test
+    public void createRecord_groupCommit() throws Exception {
+        PatientRecord record = PatientRecord.builder().name("John Arc").age(47).address("New York USA").build();
+        Mockito.when(patientRecordGroupCommitter.isEnabled()).thenReturn(true);
+        Mockito.when(patientRecordGroupCommitter.create(record)).thenReturn(new PatientRecord(51l, "John Arc", 47, "New York USA"));
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/patient")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(this.mapper.writeValueAsString(record)))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.patientId", is(51)));
+
+        Mockito.verify(patientRecordRepository, Mockito.never()).save(ArgumentMatchers.any());
+    }
+
+    @Test
+    public void createRecord_groupCommitQueueFull() throws Exception {
+        PatientRecord record = PatientRecord.builder().name("John Arc").age(47).address("New York USA").build();
+        Mockito.when(patientRecordGroupCommitter.isEnabled()).thenReturn(true);
+        Mockito.when(patientRecordGroupCommitter.create(record))
+            .thenThrow(new ServiceUnavailableException("Too many pending creates, retry later."));
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/patient")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(this.mapper.writeValueAsString(record)))
+            .andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    public void createRecords_success() throws Exception {
+        List<PatientRecord> records = Arrays.asList(
+            PatientRecord.builder().name("John Arc").age(47).address("New York USA").build(),
+            PatientRecord.builder().name("Jane Arc").age(45).address("New York USA").build());
+        List<PatientRecord> created = Arrays.asList(
+            new PatientRecord(51l, "John Arc", 47, "New York USA"),
+            new PatientRecord(52l, "Jane Arc", 45, "New York USA"));
+
+        Mockito.when(patientRecordBatchService.createAll(records)).thenReturn(created);
+
+        MockHttpServletRequestBuilder mockRequest = MockMvcRequestBuilders.post("/patient/batch")
+            .contentType(MediaType.APPLICATION_JSON)
+            .accept(MediaType.APPLICATION_JSON)
+            .content(this.mapper.writeValueAsString(records));
+
+        mockMvc.perform(mockRequest)
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$", hasSize(2)))
+            .andExpect(jsonPath("$[1].patientId", is(52)))
+            .andExpect(jsonPath("$[1].name", is("Jane Arc")));
+    }
+
+    @Test
+    public void updatePatientRecords_recordNotFound() throws Exception {
+        List<PatientRecord> records = Arrays.asList(RECORD_1, new PatientRecord(5l, "Sherlock Holmes", 40, "221B Baker Street"));
+
+        Mockito.when(patientRecordBatchService.updateAll(records))
+            .thenThrow(new ResourceNotFoundException("Patient with ID 5 does not exist."));
+
+        MockHttpServletRequestBuilder mockRequest = MockMvcRequestBuilders.put("/patient/batch")
+            .contentType(MediaType.APPLICATION_JSON)
+            .accept(MediaType.APPLICATION_JSON)
+            .content(this.mapper.writeValueAsString(records));
+
+        mockMvc.perform(mockRequest)
+            .andExpect(status().isNotFound())
+            .andExpect(result ->
+                assertEquals("Patient with ID 5 does not exist.", result.getResolvedException().getMessage()));
+    }
+
     @Test
     public void updatePatientRecord_success() throws Exception {
         PatientRecord updatedRecord = PatientRecord.builder()
@@ -133,10 +407,9 @@ public class PatientRecordControllerTest {
             .address("Bangalore India")
             .build();
 
-        Mockito.when(patientRecordRepository.findById(RECORD_1.getPatientId())).thenReturn(Optional.of(RECORD_1));
-        Mockito.when(patientRecordRepository.save(updatedRecord)).thenReturn(updatedRecord);
+        Mockito.when(patientRecordRepository.updateById(1l, "Baby Kopal", 23, "Bangalore India")).thenReturn(1);
 
-        MockHttpServletRequestBuilder mockRequest = MockMvcRequestBuilders.post("/patient")
+        MockHttpServletRequestBuilder mockRequest = MockMvcRequestBuilders.put("/patient")
             .contentType(MediaType.APPLICATION_JSON)
             .accept(MediaType.APPLICATION_JSON)
             .content(this.mapper.writeValueAsString(updatedRecord));
@@ -178,7 +451,7 @@ public class PatientRecordControllerTest {
             .address("221B Baker Street")
             .build();
 
-        Mockito.when(patientRecordRepository.findById(updatedRecord.getPatientId())).thenReturn(Optional.empty());
+        Mockito.when(patientRecordRepository.updateById(5l, "Sherlock Holmes", 40, "221B Baker Street")).thenReturn(0);
 
         MockHttpServletRequestBuilder mockRequest = MockMvcRequestBuilders.put("/patient")
             .contentType(MediaType.APPLICATION_JSON)
@@ -193,9 +466,75 @@ public class PatientRecordControllerTest {
                 assertEquals("Patient with ID 5 does not exist.", result.getResolvedException().getMessage()));
     }
 
+    @Test
+    public void updatePatientRecord_ifMatch() throws Exception {
+        PatientRecord updatedRecord = PatientRecord.builder()
+            .patientId(1l)
+            .name("Baby Kopal")
+            .age(23)
+            .address("Bangalore India")
+            .build();
+
+        Mockito.when(patientRecordRepository.updateIfVersionMatches(1l, 3l, "Baby Kopal", 23, "Bangalore India")).thenReturn(1);
+
+        MockHttpServletRequestBuilder mockRequest = MockMvcRequestBuilders.put("/patient")
+            .contentType(MediaType.APPLICATION_JSON)
+            .accept(MediaType.APPLICATION_JSON)
+            .header(HttpHeaders.IF_MATCH, "\"3\"")
+            .content(this.mapper.writeValueAsString(updatedRecord));
+
+        mockMvc.perform(mockRequest)
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"4\""))
+            .andExpect(jsonPath("$.version", is(4)))
+            .andExpect(jsonPath("$.address", is("Bangalore India")));
+
+        Mockito.verify(patientRecordRepository, Mockito.never()).findById(1l);
+    }
+
+    @Test
+    public void updatePatientRecord_versionConflict() throws Exception {
+        PatientRecord updatedRecord = new PatientRecord(1l, "Baby Kopal", 23, "Bangalore India", 3l);
+
+        Mockito.when(patientRecordRepository.updateIfVersionMatches(1l, 3l, "Baby Kopal", 23, "Bangalore India")).thenReturn(0);
+        Mockito.when(patientRecordRepository.existsById(1l)).thenReturn(true);
+
+        MockHttpServletRequestBuilder mockRequest = MockMvcRequestBuilders.put("/patient")
+            .contentType(MediaType.APPLICATION_JSON)
+            .accept(MediaType.APPLICATION_JSON)
+            .content(this.mapper.writeValueAsString(updatedRecord));
+
+        mockMvc.perform(mockRequest)
+            .andExpect(status().isConflict())
+            .andExpect(result ->
+                assertTrue(result.getResolvedException() instanceof ConflictException));
+    }
+
+    @Test
+    public void getPatientById_eTag() throws Exception {
+        PatientRecord versionedRecord = new PatientRecord(1l, "Kopal Niranjan", 23, "Lucknow India", 7l);
+        Mockito.when(patientRecordRepository.findById(1l)).thenReturn(Optional.of(versionedRecord));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                .get("/patient/1")
+                .contentType(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"7\""));
+    }
+
+    @Test
+    public void getPatientById_notFound() throws Exception {
+        Mockito.when(patientRecordRepository.findById(5l)).thenReturn(Optional.empty());
+
+        mockMvc.perform(MockMvcRequestBuilders
+                .get("/patient/5")
+                .contentType(MediaType.APPLICATION_JSON))
+            .andExpect(status().isNotFound());
+    }
+
     @Test
     public void deletePatientById_success() throws Exception {
-        Mockito.when(patientRecordRepository.findById(RECORD_2.getPatientId())).thenReturn(Optional.of(RECORD_2));
+        Mockito.when(patientRecordRepository.deleteRecordById(RECORD_2.getPatientId())).thenReturn(1);
 
         mockMvc.perform(MockMvcRequestBuilders
                 .delete("/patient/2")
@@ -203,9 +542,23 @@ public class PatientRecordControllerTest {
             .andExpect(status().isOk());
     }
 
+    @Test
+    public void deletePatientById_ifMatchConflict() throws Exception {
+        Mockito.when(patientRecordRepository.deleteIfVersionMatches(2l, 1l)).thenReturn(0);
+        Mockito.when(patientRecordRepository.existsById(2l)).thenReturn(true);
+
+        mockMvc.perform(MockMvcRequestBuilders
+                .delete("/patient/2")
+                .header(HttpHeaders.IF_MATCH, "\"1\"")
+                .contentType(MediaType.APPLICATION_JSON))
+            .andExpect(status().isConflict());
+
+        Mockito.verify(patientRecordRepository, Mockito.never()).deleteRecordById(2l);
+    }
+
     @Test
     public void deletePatientById_notFound() throws Exception {
-        Mockito.when(patientRecordRepository.findById(5l)).thenReturn(Optional.empty());
+        Mockito.when(patientRecordRepository.deleteRecordById(5l)).thenReturn(0);
 
         mockMvc.perform(MockMvcRequestBuilders
                 .delete("/patient/5")
@@ -216,4 +569,315 @@ public class PatientRecordControllerTest {
             .andExpect(result ->
                 assertEquals("Patient with ID 5 does not exist.", result.getResolvedException().getMessage()));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void importRecords_csv() throws Exception {
+        Mockito.when(patientRecordBatchService.createChunk(ArgumentMatchers.anyList()))
+            .thenAnswer(invocation -> invocation.getArgument(0));
+
+        String csv = "name,age,address\n"
+            + "John Arc,47,New York USA\n"
+            + "Jane Arc,forty,New York USA\n"
+            + "\"Watson\" John,50,221B Baker Street\n"
+            + "\"Holmes, Sherlock\",40,221B Baker Street\n";
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders
+                .post("/patient/import")
+                .contentType("text/csv")
+                .content(csv))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.status", is("COMPLETED")))
+            .andExpect(jsonPath("$.rowsRead", is(4)))
+            .andExpect(jsonPath("$.rowsImported", is(2)))
+            .andExpect(jsonPath("$.rowsFailed", is(2)))
+            .andReturn();
+
+        String errorFile = mapper.readTree(result.getResponse().getContentAsString()).get("errorFile").asText();
+        String errors = new String(Files.readAllBytes(Paths.get(errorFile)));
+        Files.delete(Paths.get(errorFile));
+        assertTrue(errors.contains("2,\"age must be an integer: forty\",\"Jane Arc\",forty,\"New York USA\""), errors);
+        assertTrue(errors.contains("3,\"Malformed CSV: "), errors);
+    }
+
+    @Test
+    public void importRecords_unsupportedContentType() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders
+                .post("/patient/import")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+            .andExpect(status().isUnsupportedMediaType());
+    }
+
+    @Test
+    public void exportRecords_gzipNdjson() throws Exception {
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/patient/export?format=ndjson&gzip=true"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "application/x-ndjson;charset=UTF-8"))
+            .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"));
+
+        Mockito.verify(patientExportService).export(ArgumentMatchers.any(OutputStream.class),
+            ArgumentMatchers.eq(PatientExportFormat.NDJSON), ArgumentMatchers.eq(true));
+    }
+
+    @Test
+    public void exportRecords_unsupportedFormat() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/patient/export?format=xml"))
+            .andExpect(status().isBadRequest())
+            .andExpect(result ->
+                assertTrue(result.getResolvedException() instanceof BadArgumentsException));
+    }
+
+    @Test
+    public void getPatientById_protobuf() throws Exception {
+        Mockito.when(patientRecordRepository.findById(RECORD_1.getPatientId())).thenReturn(Optional.of(RECORD_1));
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders
+                .get("/patient/1")
+                .accept(PatientRecordProtobufHttpMessageConverter.PROTOBUF))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.CONTENT_TYPE, PatientRecordProtobufHttpMessageConverter.PROTOBUF_VALUE))
+            .andReturn();
+
+        PatientRecord read = PatientRecordProtobuf.read(new ByteArrayInputStream(result.getResponse().getContentAsByteArray()));
+        assertEquals(RECORD_1, read);
+    }
+
+    @Test
+    public void createRecord_cbor() throws Exception {
+        ObjectMapper cbor = new ObjectMapper(new CBORFactory());
+        PatientRecord record = PatientRecord.builder().name("John Arc").age(47).address("New York USA").build();
+        Mockito.when(patientRecordRepository.save(record)).thenReturn(record);
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.post("/patient")
+                .contentType("application/cbor")
+                .accept("application/cbor")
+                .content(cbor.writeValueAsBytes(record)))
+            .andExpect(status().isOk())
+            .andReturn();
+
+        assertEquals("John Arc", cbor.readValue(result.getResponse().getContentAsByteArray(), PatientRecord.class).getName());
+    }
+
+    @Test
+    public void createRecord_protobufMissingField() throws Exception {
+        PatientRecord withoutAge = new PatientRecord();
+        withoutAge.setName("John Arc");
+        withoutAge.setAddress("New York USA");
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        PatientRecordProtobuf.write(withoutAge, body);
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/patient")
+                .contentType(PatientRecordProtobufHttpMessageConverter.PROTOBUF)
+                .content(body.toByteArray()))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void getAllRecords_compressedAboveThreshold() throws Exception {
+        List<PatientRecord> records = new ArrayList<>();
+        for (long i = 1; i <= 100; i++) {
+            records.add(new PatientRecord(i, "Patient " + i, 30, i + " Station Road, Lucknow India"));
+        }
+        Mockito.when(patientRecordRepository.findByPatientIdGreaterThanOrderByPatientIdAsc(0L, PageRequest.of(0, 101)))
+            .thenReturn(records);
+
+        MvcResult gzip = mockMvc.perform(MockMvcRequestBuilders.get("/patient").header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+            .andReturn();
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip.getResponse().getContentAsByteArray()))) {
+            assertEquals(100, mapper.readTree(in).size());
+        }
+
+        MvcResult zstd = mockMvc.perform(MockMvcRequestBuilders.get("/patient").header(HttpHeaders.ACCEPT_ENCODING, "gzip, zstd"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "zstd"))
+            .andReturn();
+        try (InputStream in = new ZstdInputStream(new ByteArrayInputStream(zstd.getResponse().getContentAsByteArray()))) {
+            assertEquals(100, mapper.readTree(in).size());
+        }
+    }
+
+    @Test
+    public void getPatientById_notCompressedBelowThreshold() throws Exception {
+        Mockito.when(patientRecordRepository.findById(RECORD_1.getPatientId())).thenReturn(Optional.of(RECORD_1));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/patient/1").header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+            .andExpect(jsonPath("$.name", is("Kopal Niranjan")));
+    }
+
+    @Test
+    public void getAllRecordFields_success() throws Exception {
+        SparsePatientRecord first = new SparsePatientRecord();
+        first.setPatientId(1L);
+        first.setName("Kopal Niranjan");
+        SparsePatientRecord second = new SparsePatientRecord();
+        second.setPatientId(2L);
+        second.setName("Suryansh Bhadouria");
+        Mockito.when(patientRecordRepository.findFieldsPage(ArgumentMatchers.any(), ArgumentMatchers.isNull(),
+                ArgumentMatchers.eq(0L), ArgumentMatchers.eq(2)))
+            .thenReturn(new ArrayList<>(Arrays.asList(first, second)));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/patient").param("fields", "name").param("limit", "1"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(PatientRecordController.NEXT_CURSOR_HEADER, KeysetCursor.encode(1L)))
+            .andExpect(jsonPath("$", hasSize(1)))
+            .andExpect(jsonPath("$[0].name", is("Kopal Niranjan")))
+            .andExpect(jsonPath("$[0].address").doesNotExist());
+        Mockito.verify(patientRecordRepository).findFieldsPage(
+            ArgumentMatchers.argThat(fields -> fields.columns().equals(Arrays.asList("patientId", "name"))),
+            ArgumentMatchers.isNull(), ArgumentMatchers.eq(0L), ArgumentMatchers.eq(2));
+    }
+
+    @Test
+    public void getAllRecordFields_unknownField() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/patient").param("fields", "name,ssn"))
+            .andExpect(status().isBadRequest())
+            .andExpect(result ->
+                assertTrue(result.getResolvedException() instanceof BadArgumentsException));
+    }
+
+    @Test
+    public void getPatientFieldsById_projectsCachedRecord() throws Exception {
+        Mockito.when(patientRecordRepository.findById(RECORD_1.getPatientId())).thenReturn(Optional.of(RECORD_1));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/patient/1").param("fields", "name"))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist(HttpHeaders.ETAG))
+            .andExpect(jsonPath("$.patientId", is(1)))
+            .andExpect(jsonPath("$.name", is("Kopal Niranjan")))
+            .andExpect(jsonPath("$.age").doesNotExist());
+    }
+
+    @Test
+    public void getRecordsByIds_inRequestedOrderWithMissingMarked() throws Exception {
+        Mockito.when(patientRecordRepository.findById(RECORD_3.getPatientId())).thenReturn(Optional.of(RECORD_3));
+        patientRecordCache.get(RECORD_3.getPatientId());
+        Mockito.when(patientRecordRepository.findAllById(ArgumentMatchers.anyIterable()))
+            .thenReturn(Arrays.asList(RECORD_1, RECORD_2));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/patient").param("ids", "2,9,3,1"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$", hasSize(4)))
+            .andExpect(jsonPath("$[0].patientId", is(2)))
+            .andExpect(jsonPath("$[0].record.name", is("Suryansh Bhadouria")))
+            .andExpect(jsonPath("$[1].patientId", is(9)))
+            .andExpect(jsonPath("$[1].found", is(false)))
+            .andExpect(jsonPath("$[1].record").doesNotExist())
+            .andExpect(jsonPath("$[2].record.name", is("Joan Arc")))
+            .andExpect(jsonPath("$[3].found", is(true)));
+        // The cached record isn't asked for again; the misses go out in a single IN query.
+        Mockito.verify(patientRecordRepository).findAllById(
+            ArgumentMatchers.<Iterable<Long>>argThat(ids -> ((Collection<Long>) ids).size() == 3
+                && !((Collection<Long>) ids).contains(RECORD_3.getPatientId())));
+    }
+
+    @Test
+    public void getRecordsByIdsInBody_success() throws Exception {
+        Mockito.when(patientRecordRepository.findAllById(ArgumentMatchers.anyIterable()))
+            .thenReturn(Arrays.asList(RECORD_1));
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/patient/multi-get")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[1, 1, 5]"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$", hasSize(3)))
+            .andExpect(jsonPath("$[1].record.name", is("Kopal Niranjan")))
+            .andExpect(jsonPath("$[2].found", is(false)));
+    }
+
+    @Test
+    public void getRecordsByIds_empty() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.post("/patient/multi-get")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+            .andExpect(status().isBadRequest())
+            .andExpect(result ->
+                assertTrue(result.getResolvedException() instanceof BadArgumentsException));
+    }
+
+    @Test
+    public void recordLoader_chunksAndCoalesces() {
+        PatientRecordRepository repository = Mockito.mock(PatientRecordRepository.class);
+        Mockito.when(repository.findAllById(ArgumentMatchers.anyIterable())).thenAnswer(invocation -> {
+            List<PatientRecord> found = new ArrayList<>();
+            for (Long patientId : invocation.<Iterable<Long>>getArgument(0)) {
+                if (patientId <= 3) {
+                    found.add(new PatientRecord(patientId, "Patient " + patientId, 30, "Lucknow India"));
+                }
+            }
+            return found;
+        });
+        PatientRecordLoader loader = new PatientRecordLoader(repository, 2, true, Duration.ofSeconds(5), 3);
+
+        assertEquals(3, loader.loadAll(Arrays.asList(1L, 2L, 3L, 4L, 5L)).size());
+        Mockito.verify(repository, Mockito.times(3)).findAllById(ArgumentMatchers.anyIterable());
+
+        // Three concurrent lookups fill the batch and go out together, well before the window ends.
+        Mockito.clearInvocations(repository);
+        ExecutorService callers = Executors.newFixedThreadPool(3);
+        try {
+            List<CompletableFuture<Optional<PatientRecord>>> lookups = new ArrayList<>();
+            for (long patientId = 2; patientId <= 4; patientId++) {
+                long id = patientId;
+                lookups.add(CompletableFuture.supplyAsync(() -> loader.load(id), callers));
+            }
+            assertEquals("Patient 2", lookups.get(0).join().get().getName());
+            assertEquals("Patient 3", lookups.get(1).join().get().getName());
+            assertTrue(lookups.get(2).join().isEmpty());
+        } finally {
+            callers.shutdown();
+        }
+        Mockito.verify(repository, Mockito.times(2)).findAllById(ArgumentMatchers.anyIterable());
+        Mockito.verify(repository, Mockito.never()).findById(ArgumentMatchers.any());
+    }
+
+    @Test
+    public void recordCache_batchesMissesOutsideCaffeine() {
+        PatientRecordRepository repository = Mockito.mock(PatientRecordRepository.class);
+        Mockito.when(repository.findAllById(ArgumentMatchers.anyIterable())).thenAnswer(invocation -> {
+            List<PatientRecord> found = new ArrayList<>();
+            invocation.<Iterable<Long>>getArgument(0)
+                .forEach(patientId -> found.add(new PatientRecord(patientId, "Patient " + patientId, 30, "Lucknow India")));
+            return found;
+        });
+        PatientRecordCache cache = new PatientRecordCache(
+            new PatientRecordLoader(repository, 500, true, Duration.ofSeconds(5), 2), true, 100, Duration.ofMinutes(1));
+
+        // Both misses reach the loader's batch at once, which only happens if neither waits inside Caffeine's compute.
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            CompletableFuture<Optional<PatientRecord>> first = CompletableFuture.supplyAsync(() -> cache.get(1L), callers);
+            CompletableFuture<Optional<PatientRecord>> second = CompletableFuture.supplyAsync(() -> cache.get(2L), callers);
+            assertEquals("Patient 1", first.join().get().getName());
+            assertEquals("Patient 2", second.join().get().getName());
+        } finally {
+            callers.shutdown();
+        }
+        Mockito.verify(repository, Mockito.times(1)).findAllById(ArgumentMatchers.anyIterable());
+        assertEquals("Patient 1", cache.get(1L).get().getName());
+        assertEquals(1, cache.stats().hitCount());
+    }
+
+    @Test
+    public void recordCache_dropsLoadInvalidatedByAWrite() {
+        PatientRecordRepository repository = Mockito.mock(PatientRecordRepository.class);
+        PatientRecordCache[] cache = new PatientRecordCache[1];
+        Mockito.when(repository.findById(1L)).thenAnswer(invocation -> {
+            // A write commits while the miss is being read.
+            cache[0].invalidate(1L);
+            return Optional.of(new PatientRecord(1L, "Before Write", 30, "Lucknow India"));
+        }).thenReturn(Optional.of(new PatientRecord(1L, "After Write", 30, "Lucknow India")));
+        cache[0] = new PatientRecordCache(
+            new PatientRecordLoader(repository, 500, false, Duration.ofMillis(2), 200), true, 100, Duration.ofMinutes(1));
+
+        assertEquals("Before Write", cache[0].get(1L).get().getName());
+        assertEquals("After Write", cache[0].get(1L).get().getName());
+    }
+}
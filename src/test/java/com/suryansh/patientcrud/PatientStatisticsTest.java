@@ -0,0 +1,147 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 16/10/26
+ **************************************************************************/
+
+package com.suryansh.patientcrud;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.suryansh.patientcrud.entity.PatientRecord;
+import com.suryansh.patientcrud.repository.PatientRecordRepository;
+import com.suryansh.patientcrud.stats.PatientStatistics;
+import com.suryansh.patientcrud.stats.PatientStats;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+/**
+ * Patient stats on embedded H2: writes through {@code /patient} move the counters without a table scan, and
+ * reconciliation puts right what bypassed them.
+ */
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:stats;MODE=MySQL;DB_CLOSE_DELAY=-1",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "patient.stats.enabled=true",
+    "patient.stats.reconcile-interval=3600000",
+    "patient.cache.enabled=false"
+})
+@AutoConfigureMockMvc
+public class PatientStatisticsTest {
+
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    ObjectMapper mapper;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    PatientStatistics patientStatistics;
+
+    @Test
+    public void writes_moveCounters() throws Exception {
+        PatientStats before = patientStatistics.get();
+        assertNotNull(before.getReconciledAt());
+        long first = create(new PatientRecord(null, "Stats A", 34, "1 Main Road, Stats City"));
+        long second = create(new PatientRecord(null, "Stats B", 38, "2 Main Road,  stats   CITY "));
+        mockMvc.perform(MockMvcRequestBuilders.post("/patient/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(List.of(new PatientRecord(null, "Stats C", 35, "Stats City")))))
+            .andExpect(status().isOk());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/patient/stats"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.total", is((int) before.getTotal() + 3)))
+            .andExpect(jsonPath("$.byCity['stats city']", is(3)));
+
+        mockMvc.perform(MockMvcRequestBuilders.put("/patient")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .content(mapper.writeValueAsString(new PatientRecord(second, "Stats B", 52, "Other Stats Town", null))))
+            .andExpect(status().isOk());
+        mockMvc.perform(MockMvcRequestBuilders.delete("/patient/" + first)).andExpect(status().isOk());
+
+        PatientStats after = patientStatistics.get();
+        assertEquals(before.getTotal() + 2, after.getTotal());
+        assertEquals(1L, after.getByCity().get("stats city"));
+        assertEquals(1L, after.getByCity().get("other stats town"));
+        assertEquals(count(before, "30-39") + 1, count(after, "30-39"));
+        assertEquals(count(before, "50-59") + 1, count(after, "50-59"));
+    }
+
+    @Test
+    public void reconcile_correctsDrift() {
+        jdbcTemplate.update("insert into patient_record (patient_id, name, age, address, version) "
+            + "values (900001, 'Drift', 77, 'Drift Ville', 0)");
+        assertFalse(patientStatistics.get().getByCity().containsKey("drift ville"));
+
+        patientStatistics.reconcile();
+
+        PatientStats stats = patientStatistics.get();
+        assertEquals(1L, stats.getByCity().get("drift ville"));
+        assertEquals(jdbcTemplate.queryForObject("select count(*) from patient_record", Long.class), stats.getTotal());
+    }
+
+    @Test
+    public void reconcile_keepsChangesAppliedWhileScanning() {
+        PatientRecordRepository repository = Mockito.mock(PatientRecordRepository.class);
+        PatientStatistics statistics = new PatientStatistics(repository, true, 10);
+        // The scan sees the table before this create, whose commit lands while it runs.
+        Mockito.when(repository.countByAge()).thenAnswer(invocation -> {
+            statistics.record(null, new PatientRecord(1L, "Scanned", 41, "Scan City"));
+            return Map.of(25, 1L);
+        });
+        Mockito.when(repository.countByAddress()).thenReturn(Map.of("Old Town", 1L));
+
+        statistics.reconcile();
+
+        PatientStats stats = statistics.get();
+        assertEquals(2, stats.getTotal());
+        assertEquals(1L, stats.getByCity().get("scan city"));
+        assertEquals(1L, stats.getByAge().get("40-49"));
+    }
+
+    private long create(PatientRecord patientRecord) throws Exception {
+        String body = mockMvc.perform(MockMvcRequestBuilders.post("/patient")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(patientRecord)))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+        return mapper.readValue(body, PatientRecord.class).getPatientId();
+    }
+
+    private static long count(PatientStats stats, String bracket) {
+        return stats.getByAge().getOrDefault(bracket, 0L);
+    }
+}
@@ -0,0 +1,175 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 08/10/22
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.suryansh.patientcrud.cache.PatientRecordCache;
+import com.suryansh.patientcrud.entity.PatientRecord;
+import com.suryansh.patientcrud.lookup.PatientRecordLoader;
+import com.suryansh.patientcrud.routing.ReplicaRoutingDataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+/**
+ * Routing against three embedded H2 databases: a primary and two replicas holding different data, so each response
+ * shows where it was read from. A third replica URL points nowhere and must stay out of rotation.
+ */
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:primary;MODE=MySQL;DB_CLOSE_DELAY=-1",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "patient.datasource.replica-urls=" + ReadReplicaRoutingTest.REPLICA_0 + "," + ReadReplicaRoutingTest.REPLICA_1
+        + ",jdbc:h2:tcp://localhost:1/unreachable",
+    "patient.datasource.replica-connection-timeout=250",
+    "patient.datasource.health-check-interval=3600000",
+    "patient.cache.enabled=false"
+})
+@AutoConfigureMockMvc
+public class ReadReplicaRoutingTest {
+
+    static final String REPLICA_0 = "jdbc:h2:mem:replica0;MODE=MySQL;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_1 = "jdbc:h2:mem:replica1;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    ObjectMapper mapper;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    ReplicaRoutingDataSource replicaRoutingDataSource;
+    @Autowired
+    PatientRecordLoader patientRecordLoader;
+
+    @BeforeAll
+    public static void createReplicas() throws SQLException {
+        String[] replicas = {REPLICA_0, REPLICA_1};
+        for (int i = 0; i < replicas.length; i++) {
+            try (Connection connection = DriverManager.getConnection(replicas[i]);
+                 Statement statement = connection.createStatement()) {
+                statement.execute("create table if not exists patient_record (patient_id bigint primary key, "
+                    + "name varchar(255), age int, address varchar(255), version bigint default 0 not null)");
+                statement.execute("merge into patient_record values (999, 'Replica " + i + "', 30, 'Replica Street', 0)");
+            }
+        }
+    }
+
+    @BeforeEach
+    public void seedPrimary() {
+        // Outside a read-only transaction, so this goes to the primary.
+        jdbcTemplate.update("merge into patient_record (patient_id, name, age, address, version) "
+            + "values (999, 'Primary', 40, 'Primary Street', 0)");
+        replicaRoutingDataSource.checkReplicas();
+    }
+
+    @Test
+    public void reads_roundRobinOverHealthyReplicas() throws Exception {
+        Set<String> names = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            names.add(getName(999, "round-robin"));
+        }
+
+        assertEquals(new HashSet<>(Arrays.asList("Replica 0", "Replica 1")), names);
+        Map<String, Boolean> health = new LinkedHashMap<>();
+        health.put("replica-0", true);
+        health.put("replica-1", true);
+        health.put("replica-2", false);
+        assertEquals(health, replicaRoutingDataSource.replicaHealth());
+    }
+
+    @Test
+    public void writes_goToPrimary() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.post("/patient")
+                .header("X-Client-Id", "writer")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(new PatientRecord(null, "Written", 25, "Primary Street"))))
+            .andExpect(status().isOk());
+
+        assertEquals(1, jdbcTemplate.queryForObject(
+            "select count(*) from patient_record where name = 'Written'", Integer.class));
+    }
+
+    @Test
+    public void readYourWrites_pinsWriterToPrimary() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.post("/patient")
+                .header("X-Client-Id", "alice")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(new PatientRecord(null, "Alice", 33, "Primary Street"))))
+            .andExpect(status().isOk());
+
+        assertEquals("Primary", getName(999, "alice"));
+        assertEquals("Replica", getName(999, "bob").substring(0, 7));
+    }
+
+    @Test
+    public void versionConflict_isToldFromMissingOnThePrimary() throws Exception {
+        // Not on the replicas yet, as if they lagged behind its create.
+        jdbcTemplate.update("merge into patient_record (patient_id, name, age, address, version) "
+            + "values (998, 'Primary Only', 40, 'Primary Street', 0)");
+
+        mockMvc.perform(MockMvcRequestBuilders.put("/patient")
+                .header("X-Client-Id", "stranger")
+                .header(HttpHeaders.IF_MATCH, "\"5\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(new PatientRecord(998L, "Primary Only", 41, "Primary Street"))))
+            .andExpect(status().isConflict());
+    }
+
+    @Test
+    public void cacheMisses_loadFromPrimary() {
+        PatientRecordCache cache = new PatientRecordCache(patientRecordLoader, true, 100, Duration.ofMinutes(1));
+
+        assertEquals("Primary", cache.get(999L).get().getName());
+        assertEquals("Primary", cache.getAll(Arrays.asList(999L)).get(999L).getName());
+        // The loader's own reads still go to the replicas.
+        assertEquals("Replica", patientRecordLoader.load(999L).get().getName().substring(0, 7));
+    }
+
+    private String getName(long patientId, String clientId) throws Exception {
+        String body = mockMvc.perform(MockMvcRequestBuilders.get("/patient/" + patientId).header("X-Client-Id", clientId))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+        return mapper.readTree(body).get("name").asText();
+    }
+}
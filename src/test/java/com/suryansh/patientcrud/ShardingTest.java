@@ -0,0 +1,217 @@
+/* ************************************************************************
+ * ADOBE CONFIDENTIAL
+ * ___________________
+ *
+ *  Copyright 2020 Adobe Systems Incorporated
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Adobe Systems Incorporated and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Adobe Systems Incorporated and its
+ * suppliers and are protected by all applicable intellectual property
+ * laws, including trade secret and copyright laws.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Adobe Systems Incorporated.
+ *
+ * author: suryansh
+ * date: 08/10/22
+ **************************************************************************/
+
+
+package com.suryansh.patientcrud;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.suryansh.patientcrud.controller.PatientRecordController;
+import com.suryansh.patientcrud.entity.PatientRecord;
+import com.suryansh.patientcrud.sharding.ShardContext;
+import com.suryansh.patientcrud.sharding.ShardRouter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+/**
+ * Sharding over three embedded H2 databases, in the middle of growing from two shards to three: records seeded on
+ * their two-shard owner must stay reachable until the rebalance moves them.
+ */
+@SpringBootTest(properties = {
+    "patient.sharding.shard-urls=jdbc:h2:mem:shard0;MODE=MySQL;DB_CLOSE_DELAY=-1,"
+        + "jdbc:h2:mem:shard1;MODE=MySQL;DB_CLOSE_DELAY=-1,jdbc:h2:mem:shard2;MODE=MySQL;DB_CLOSE_DELAY=-1",
+    "patient.sharding.previous-ring-size=2",
+    "patient.sharding.initialize-schema=true",
+    "patient.sharding.rebalance-page-size=50",
+    "spring.jpa.hibernate.ddl-auto=none",
+    "patient.cache.enabled=false"
+})
+@AutoConfigureMockMvc
+public class ShardingTest {
+
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    ObjectMapper mapper;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    ShardRouter shardRouter;
+
+    @Test
+    public void create_storesRecordOnItsOwner() throws Exception {
+        for (int i = 0; i < 30; i++) {
+            long patientId = create("Owner " + i);
+
+            Map<String, Long> copies = copiesOf(patientId);
+            assertEquals(1L, copies.get(shardRouter.owner(patientId)), "record " + patientId + " on " + copies);
+            assertEquals(1L, copies.values().stream().mapToLong(Long::longValue).sum());
+            mockMvc.perform(MockMvcRequestBuilders.get("/patient/" + patientId)).andExpect(status().isOk());
+        }
+    }
+
+    @Test
+    public void batchCreate_splitsChunkByShard() throws Exception {
+        List<PatientRecord> batch = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            batch.add(new PatientRecord(null, "Batch " + i, 50, "Batch Street"));
+        }
+
+        String body = mockMvc.perform(MockMvcRequestBuilders.post("/patient/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(batch)))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+
+        JsonNode created = mapper.readTree(body);
+        assertEquals(40, created.size());
+        for (JsonNode record : created) {
+            long patientId = record.get("patientId").asLong();
+            assertEquals(1L, copiesOf(patientId).get(shardRouter.owner(patientId)));
+        }
+    }
+
+    @Test
+    public void list_mergesShardsInIdOrder() throws Exception {
+        List<Long> created = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            created.add(create("Listed " + i));
+        }
+
+        List<Long> listed = new ArrayList<>();
+        String cursor = null;
+        do {
+            MockHttpServletRequestBuilder page = MockMvcRequestBuilders.get("/patient").param("limit", "7");
+            if (cursor != null) {
+                page.param("cursor", cursor);
+            }
+            MockHttpServletResponse response = mockMvc.perform(page).andExpect(status().isOk()).andReturn().getResponse();
+            mapper.readTree(response.getContentAsString()).forEach(record -> listed.add(record.get("patientId").asLong()));
+            cursor = response.getHeader(PatientRecordController.NEXT_CURSOR_HEADER);
+        } while (cursor != null);
+
+        for (int i = 1; i < listed.size(); i++) {
+            assertTrue(listed.get(i - 1) < listed.get(i), "not in ID order: " + listed);
+        }
+        assertTrue(listed.containsAll(created));
+    }
+
+    @Test
+    public void sparseFields_selectOnlyRequestedColumnsOnEveryShard() throws Exception {
+        long patientId = create("Sparse");
+
+        MockHttpServletResponse response = mockMvc.perform(MockMvcRequestBuilders.get("/patient")
+                .param("fields", "name")
+                .param("limit", "1000"))
+            .andExpect(status().isOk())
+            .andReturn().getResponse();
+        boolean found = false;
+        for (JsonNode record : mapper.readTree(response.getContentAsString())) {
+            assertTrue(record.has("patientId") && record.has("name"));
+            assertTrue(!record.has("address") && !record.has("age"), "unselected fields returned: " + record);
+            found |= record.get("patientId").asLong() == patientId;
+        }
+        assertTrue(found);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/patient/" + patientId).param("fields", "age"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.age").exists())
+            .andExpect(jsonPath("$.name").doesNotExist());
+    }
+
+    @Test
+    public void rebalance_movesRecordsToTheirOwnerWhileTheyStayReachable() throws Exception {
+        List<Long> misplaced = new ArrayList<>();
+        for (long patientId = 1; patientId <= 200; patientId++) {
+            String previous = shardRouter.previousOwner(patientId);
+            long id = patientId;
+            ShardContext.on(previous != null ? previous : shardRouter.owner(patientId), () -> jdbcTemplate.update(
+                "insert into patient_record (patient_id, name, age, address, version) values (?, ?, 40, 'Old Street', 0)",
+                id, "Seeded " + id));
+            if (previous != null) {
+                misplaced.add(patientId);
+            }
+        }
+        assertTrue(misplaced.size() > 10, "the new shard should take over some records: " + misplaced);
+
+        long updated = misplaced.get(0);
+        long deleted = misplaced.get(1);
+        assertEquals("Seeded " + updated, getName(updated));
+        mockMvc.perform(MockMvcRequestBuilders.put("/patient")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(new PatientRecord(updated, "Updated", 41, "New Street"))))
+            .andExpect(status().isOk());
+        mockMvc.perform(MockMvcRequestBuilders.delete("/patient/" + deleted)).andExpect(status().isOk());
+
+        JsonNode report = mapper.readTree(mockMvc.perform(MockMvcRequestBuilders.post("/patient/shards/rebalance"))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString());
+
+        assertEquals(misplaced.size() - 1, report.get("moved").asLong());
+        for (long patientId = 1; patientId <= 200; patientId++) {
+            if (patientId == deleted) {
+                mockMvc.perform(MockMvcRequestBuilders.get("/patient/" + patientId)).andExpect(status().isNotFound());
+                continue;
+            }
+            Map<String, Long> copies = copiesOf(patientId);
+            assertEquals(1L, copies.get(shardRouter.owner(patientId)), "record " + patientId + " on " + copies);
+            assertEquals(1L, copies.values().stream().mapToLong(Long::longValue).sum());
+        }
+        assertEquals("Updated", getName(updated));
+    }
+
+    private long create(String name) throws Exception {
+        String body = mockMvc.perform(MockMvcRequestBuilders.post("/patient")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(new PatientRecord(null, name, 30, "Shard Street"))))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+        return mapper.readTree(body).get("patientId").asLong();
+    }
+
+    private String getName(long patientId) throws Exception {
+        String body = mockMvc.perform(MockMvcRequestBuilders.get("/patient/" + patientId))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+        return mapper.readTree(body).get("name").asText();
+    }
+
+    private Map<String, Long> copiesOf(long patientId) {
+        return shardRouter.onEachShard(shard -> jdbcTemplate.queryForObject(
+            "select count(*) from patient_record where patient_id = ?", Long.class, patientId));
+    }
+}